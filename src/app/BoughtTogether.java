@@ -0,0 +1,152 @@
+package app;
+
+import java.sql.*;
+
+/**
+ * A sparse product-by-product co-occurrence matrix for "frequently bought together" suggestions.
+ * <p>
+ * Row P holds, for every product Q that has appeared in a sale with P, the number of such sales.
+ * The matrix is built in one streaming pass over sale_items (read in sale order, so each basket
+ * is complete when the next sale ID starts) and then updated by SalesLogger for every sale this
+ * terminal completes; sales from other terminals are picked up at the next start.
+ * <p>
+ * Suggestions are ranked by cosine similarity, co(P,Q) / sqrt(sales(P) * sales(Q)), so staples
+ * that appear in every basket do not crowd out genuinely related items. A lookup walks one row,
+ * which takes microseconds and can run on every add-to-cart.
+ */
+public class BoughtTogether {
+
+    // Large baskets (a restaurant stocking up) add many weak pairs; only their first items are paired
+    private static final int MAX_BASKET_PAIRING = 30;
+    private static final int MIN_CO_OCCURRENCE = 2;
+
+    private final IntObjectMap<IntIntMap> rows = new IntObjectMap<>(1024);
+    private final IntIntMap salesPerProduct = new IntIntMap(1024);
+    private volatile boolean ready = false;
+
+    /**
+     * Builds the matrix on a background thread.
+     */
+    public void startBuilding() {
+        Thread builder = new Thread(this::buildSafely, "bought-together");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    private void buildSafely() {
+        try {
+            build();
+        } catch (SQLException e) {
+            System.err.println("Frequently-bought-together suggestions not available: " + e.getMessage());
+        }
+    }
+
+    private void build() throws SQLException {
+        BoughtTogether built = new BoughtTogether();
+        try (Connection conn = DatabaseConnection.getReportingConnection();
+             Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(Integer.MIN_VALUE); // Connector/J: stream rows instead of buffering them all
+            try (ResultSet rs = stmt.executeQuery("SELECT sale_id, product_id FROM sale_items ORDER BY sale_id")) {
+                IntList basket = new IntList();
+                int currentSale = Integer.MIN_VALUE;
+                while (rs.next()) {
+                    int saleId = rs.getInt(1);
+                    if (saleId != currentSale) {
+                        built.addBasket(basket);
+                        basket.clear();
+                        currentSale = saleId;
+                    }
+                    int productId = rs.getInt(2);
+                    if (!basket.contains(productId)) basket.add(productId);
+                }
+                built.addBasket(basket);
+            }
+        }
+        synchronized (this) {
+            // Keep the sales SalesLogger added while the build was running
+            built.rows.forEach((productId, row) -> {
+                IntIntMap target = rows.get(productId);
+                if (target == null) rows.put(productId, row);
+                else row.forEach(target::addTo);
+            });
+            built.salesPerProduct.forEach(salesPerProduct::addTo);
+            ready = true;
+        }
+    }
+
+    /**
+     * Adds a sale completed by this terminal.
+     */
+    public synchronized void addSale(Cart cart) {
+        IntList basket = new IntList(cart.size());
+        cart.forEach((product, quantity) -> basket.add(product.getId()));
+        addBasket(basket);
+    }
+
+    private void addBasket(IntList basket) {
+        for (int i = 0; i < basket.size(); i++) {
+            salesPerProduct.addTo(basket.get(i), 1);
+        }
+        int n = Math.min(basket.size(), MAX_BASKET_PAIRING);
+        for (int i = 0; i < n; i++) {
+            int a = basket.get(i);
+            for (int j = i + 1; j < n; j++) {
+                int b = basket.get(j);
+                row(a).addTo(b, 1);
+                row(b).addTo(a, 1);
+            }
+        }
+    }
+
+    private IntIntMap row(int productId) {
+        IntIntMap row = rows.get(productId);
+        if (row == null) {
+            row = new IntIntMap(8);
+            rows.put(productId, row);
+        }
+        return row;
+    }
+
+    /**
+     * Returns the products most often bought with the given one, best first.
+     *
+     * @param productId The product just added to the cart.
+     * @param exclude   Products not to suggest (typically those already in the cart).
+     * @param limit     The maximum number of suggestions.
+     */
+    public synchronized IntList suggest(int productId, IntList exclude, int limit) {
+        IntList result = new IntList(limit);
+        IntIntMap row = rows.get(productId);
+        if (row == null) return result;
+
+        // Small insertion-sorted top list; rows are short and limit is a handful
+        int[] bestIds = new int[limit];
+        double[] bestScores = new double[limit];
+        int[] count = {0};
+        double base = salesPerProduct.get(productId, 1);
+        row.forEach((other, co) -> {
+            if (co < MIN_CO_OCCURRENCE || exclude.contains(other)) return;
+            double score = co / Math.sqrt(base * Math.max(1, salesPerProduct.get(other, 1)));
+            int pos = count[0];
+            if (pos == limit) {
+                if (score <= bestScores[limit - 1]) return;
+                pos = limit - 1;
+            } else {
+                count[0]++;
+            }
+            while (pos > 0 && bestScores[pos - 1] < score) {
+                bestScores[pos] = bestScores[pos - 1];
+                bestIds[pos] = bestIds[pos - 1];
+                pos--;
+            }
+            bestScores[pos] = score;
+            bestIds[pos] = other;
+        });
+        for (int i = 0; i < count[0]; i++) result.add(bestIds[i]);
+        return result;
+    }
+}
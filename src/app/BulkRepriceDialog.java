@@ -0,0 +1,245 @@
+package app;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Reprices many products at once, e.g. after a supplier increase. Products are selected by
+ * category, brand and/or ref # pattern; the new prices are previewed from the in-memory catalog
+ * and then written by a single set-based UPDATE (see Inventory.repriceProducts).
+ */
+public class BulkRepriceDialog extends JDialog {
+
+    private static final String ANY_CATEGORY = "(Any category)";
+
+    private final Inventory inventory;
+    private final CatalogCache catalog;
+    private final CatalogSynchronizer synchronizer;
+
+    private final JComboBox<Object> categoryComboBox;
+    private final JTextField brandField;
+    private final JTextField refPatternField;
+    private final JComboBox<PriceRule.Adjustment> adjustmentComboBox;
+    private final JTextField amountField;
+    private final JComboBox<PriceRule.Rounding> roundingComboBox;
+    private final PreviewTableModel previewModel = new PreviewTableModel();
+    private final JLabel summaryLabel;
+    private final JButton applyButton;
+
+    // The selection and rule the current preview was made with; Apply uses exactly these
+    private ProductSelector previewSelector;
+    private PriceRule previewRule;
+
+    public BulkRepriceDialog(Window owner, Inventory inventory, CatalogCache catalog, CatalogSynchronizer synchronizer) {
+        super(owner, "Bulk Repricing", ModalityType.APPLICATION_MODAL);
+        this.inventory = inventory;
+        this.catalog = catalog;
+        this.synchronizer = synchronizer;
+
+        setSize(900, 600);
+        setLocationRelativeTo(owner);
+        setLayout(new BorderLayout(10, 10));
+
+        categoryComboBox = new JComboBox<>();
+        categoryComboBox.addItem(ANY_CATEGORY);
+        catalog.getCategoryTree().getAllInTreeOrder().forEach(categoryComboBox::addItem);
+        categoryComboBox.setRenderer(new CategoryTreeModel.IndentedRenderer(catalog::getCategoryTree));
+        brandField = new JTextField(10);
+        refPatternField = new JTextField(10);
+        refPatternField.setToolTipText("* matches any characters, ? a single character, e.g. COKE-*");
+        adjustmentComboBox = new JComboBox<>(PriceRule.Adjustment.values());
+        amountField = new JTextField(6);
+        roundingComboBox = new JComboBox<>(PriceRule.Rounding.values());
+        JButton previewButton = new JButton("Preview");
+        previewButton.addActionListener(e -> handlePreview());
+
+        JPanel selectPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        selectPanel.setBorder(BorderFactory.createTitledBorder("Products"));
+        selectPanel.add(new JLabel("Category:"));
+        selectPanel.add(categoryComboBox);
+        selectPanel.add(new JLabel("Brand:"));
+        selectPanel.add(brandField);
+        selectPanel.add(new JLabel("Ref # pattern:"));
+        selectPanel.add(refPatternField);
+
+        JPanel rulePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        rulePanel.setBorder(BorderFactory.createTitledBorder("Change"));
+        rulePanel.add(adjustmentComboBox);
+        rulePanel.add(new JLabel("Amount:"));
+        rulePanel.add(amountField);
+        rulePanel.add(new JLabel("Rounding:"));
+        rulePanel.add(roundingComboBox);
+        rulePanel.add(previewButton);
+
+        JPanel northPanel = new JPanel(new GridLayout(2, 1));
+        northPanel.add(selectPanel);
+        northPanel.add(rulePanel);
+        add(northPanel, BorderLayout.NORTH);
+
+        add(new JScrollPane(new JTable(previewModel)), BorderLayout.CENTER);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        summaryLabel = new JLabel("Choose the products and the change, then Preview.");
+        applyButton = new JButton("Apply");
+        applyButton.setEnabled(false);
+        applyButton.addActionListener(e -> handleApply());
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(e -> dispose());
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(applyButton);
+        buttonPanel.add(closeButton);
+        southPanel.add(summaryLabel, BorderLayout.CENTER);
+        southPanel.add(buttonPanel, BorderLayout.EAST);
+        southPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 10, 10));
+        add(southPanel, BorderLayout.SOUTH);
+
+        // Any edit makes the preview out of date
+        DocumentListener invalidate = new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { invalidatePreview(); }
+            public void removeUpdate(DocumentEvent e) { invalidatePreview(); }
+            public void changedUpdate(DocumentEvent e) { invalidatePreview(); }
+        };
+        brandField.getDocument().addDocumentListener(invalidate);
+        refPatternField.getDocument().addDocumentListener(invalidate);
+        amountField.getDocument().addDocumentListener(invalidate);
+        categoryComboBox.addActionListener(e -> invalidatePreview());
+        adjustmentComboBox.addActionListener(e -> invalidatePreview());
+        roundingComboBox.addActionListener(e -> invalidatePreview());
+    }
+
+    private void handlePreview() {
+        if (!catalog.isLoaded()) {
+            JOptionPane.showMessageDialog(this, "The catalog is still loading. Please try again in a moment.", "Please Wait", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        BigDecimal amount;
+        try {
+            amount = new BigDecimal(amountField.getText().trim());
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Enter the change as a number, e.g. 7.5 or -20.", "Input Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        Object category = categoryComboBox.getSelectedItem();
+        ProductSelector selector = new ProductSelector(
+                (category instanceof Category c) ? c.getId() : null,
+                emptyToNull(brandField.getText()),
+                emptyToNull(refPatternField.getText()));
+        PriceRule rule = new PriceRule((PriceRule.Adjustment) adjustmentComboBox.getSelectedItem(), amount,
+                (PriceRule.Rounding) roundingComboBox.getSelectedItem());
+
+        List<Product> products = new ArrayList<>();
+        List<BigDecimal> newPrices = new ArrayList<>();
+        CategoryTree categories = catalog.getCategoryTree();
+        List<Product> candidates = catalog.getAllProducts();
+        candidates.sort(Comparator.comparing(Product::getName, String.CASE_INSENSITIVE_ORDER));
+        for (Product p : candidates) {
+            if (!selector.matches(p, categories)) continue;
+            BigDecimal oldPrice = BigDecimal.valueOf(p.getPrice()).setScale(2, RoundingMode.HALF_UP);
+            BigDecimal newPrice = rule.apply(oldPrice);
+            if (newPrice.compareTo(oldPrice) != 0) {
+                products.add(p);
+                newPrices.add(newPrice);
+            }
+        }
+        previewModel.setRows(products, newPrices);
+        previewSelector = selector;
+        previewRule = rule;
+        summaryLabel.setText(String.format("%d products will change (%s).", products.size(), selector));
+        applyButton.setEnabled(!products.isEmpty());
+    }
+
+    private void invalidatePreview() {
+        if (previewSelector == null) return;
+        previewSelector = null;
+        previewRule = null;
+        applyButton.setEnabled(false);
+        summaryLabel.setText("The criteria changed. Preview again before applying.");
+    }
+
+    private void handleApply() {
+        int count = previewModel.getRowCount();
+        int choice = JOptionPane.showConfirmDialog(this, "Change the price of " + count + " products?", "Confirm Repricing", JOptionPane.YES_NO_OPTION);
+        if (choice != JOptionPane.YES_OPTION) return;
+
+        ProductSelector selector = previewSelector;
+        PriceRule rule = previewRule;
+        applyButton.setEnabled(false);
+        summaryLabel.setText("Applying...");
+
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() {
+                return inventory.repriceProducts(selector, rule, count);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    int updated = get();
+                    if (updated < 0) {
+                        applyButton.setEnabled(true);
+                        summaryLabel.setText("Nothing was changed.");
+                        JOptionPane.showMessageDialog(BulkRepriceDialog.this,
+                                "Nothing was changed: the products were edited since the preview, or the database is unavailable. Please preview again.",
+                                "Repricing Failed", JOptionPane.WARNING_MESSAGE);
+                        return;
+                    }
+                    synchronizer.requestSync(); // Show the new prices on this terminal right away
+                    previewModel.setRows(List.of(), List.of());
+                    previewSelector = null;
+                    previewRule = null;
+                    summaryLabel.setText(updated + " products repriced.");
+                    JOptionPane.showMessageDialog(BulkRepriceDialog.this, updated + " products repriced.", "Success", JOptionPane.INFORMATION_MESSAGE);
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+        }.execute();
+    }
+
+    private static String emptyToNull(String text) {
+        String trimmed = text.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static class PreviewTableModel extends AbstractTableModel {
+        private final String[] columns = {"Ref #", "Product", "Brand", "Old Price", "New Price", "Change"};
+        private List<Product> products = List.of();
+        private List<BigDecimal> newPrices = List.of();
+
+        void setRows(List<Product> products, List<BigDecimal> newPrices) {
+            this.products = products;
+            this.newPrices = newPrices;
+            fireTableDataChanged();
+        }
+
+        @Override public int getRowCount() { return products.size(); }
+        @Override public int getColumnCount() { return columns.length; }
+        @Override public String getColumnName(int column) { return columns[column]; }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Product p = products.get(row);
+            switch (column) {
+                case 0: return p.getRefNumber();
+                case 1: return p.getName();
+                case 2: return p.getBrand();
+                case 3: return String.format("%.2f", p.getPrice());
+                case 4: return String.format("%.2f", newPrices.get(row));
+                default:
+                    if (p.getPrice() <= 0) return "";
+                    double change = (newPrices.get(row).doubleValue() - p.getPrice()) / p.getPrice() * 100;
+                    return String.format("%+.1f%%", change);
+            }
+        }
+    }
+}
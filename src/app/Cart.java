@@ -0,0 +1,98 @@
+package app;
+
+import java.math.BigDecimal;
+
+/**
+ * The products and quantities in an in-progress sale, in the order they were added.
+ * Quantities are kept in a primitive map keyed by product ID, so adding items and
+ * recalculating totals does not allocate boxed Integers.
+ */
+public class Cart {
+
+    /** Receives each line during forEach. */
+    public interface LineConsumer {
+        void accept(Product product, int quantity);
+    }
+
+    private final IntList order = new IntList();
+    private final IntIntMap quantities = new IntIntMap();
+    private final IntObjectMap<Product> products = new IntObjectMap<>();
+
+    public int getQuantity(Product product) {
+        return quantities.get(product.getId(), 0);
+    }
+
+    public int getQuantityOf(int productId) {
+        return quantities.get(productId, 0);
+    }
+
+    /**
+     * @return The product on the line for this ID, or null if it is not in the cart.
+     */
+    public Product findProduct(int productId) {
+        return products.get(productId);
+    }
+
+    /**
+     * @return The line number of a product, or -1 if it is not in the cart.
+     */
+    public int indexOf(int productId) {
+        return order.indexOf(productId);
+    }
+
+    /**
+     * Sets the quantity of a product, adding it to the end of the cart if it is new.
+     * A quantity of zero or less removes the line.
+     */
+    public void setQuantity(Product product, int quantity) {
+        if (quantity <= 0) {
+            remove(product);
+            return;
+        }
+        if (!quantities.containsKey(product.getId())) order.add(product.getId());
+        quantities.put(product.getId(), quantity);
+        products.put(product.getId(), product);
+    }
+
+    public void remove(Product product) {
+        if (quantities.remove(product.getId())) {
+            order.removeAt(order.indexOf(product.getId()));
+            products.remove(product.getId());
+        }
+    }
+
+    public void clear() {
+        order.clear();
+        quantities.clear();
+        products.clear();
+    }
+
+    public boolean isEmpty() { return order.isEmpty(); }
+
+    /**
+     * @return The number of distinct products (lines) in the cart.
+     */
+    public int size() { return order.size(); }
+
+    public Product getProduct(int line) { return products.get(order.get(line)); }
+
+    public int getQuantityAt(int line) { return quantities.get(order.get(line), 0); }
+
+    public void forEach(LineConsumer consumer) {
+        for (int i = 0; i < order.size(); i++) {
+            int id = order.get(i);
+            consumer.accept(products.get(id), quantities.get(id, 0));
+        }
+    }
+
+    /**
+     * @return The sum of price × quantity over all lines.
+     */
+    public BigDecimal getTotal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < order.size(); i++) {
+            total = total.add(BigDecimal.valueOf(getProduct(i).getPrice()).multiply(BigDecimal.valueOf(getQuantityAt(i))));
+        }
+        return total;
+    }
+}
@@ -0,0 +1,218 @@
+package app;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * The promotion discounts on one cart, kept up to date line by line.
+ * <p>
+ * When a line changes, only the promotions indexed under that product, its category or the
+ * categories above it are re-evaluated, so the cost of a change does not grow with the size of the cart or the number
+ * of promotions. Each promotion's offer to each line is remembered; a line receives the largest
+ * offer it has (discounts do not stack). A bundle's saving is split across its lines in
+ * proportion to their regular price, so a change to one bundle item can also change the
+ * discount on the others.
+ * <p>
+ * Amounts are kept in cents. Call {@link #reprice()} before checkout so that time windows that
+ * opened or closed while the cart was being built, and newly loaded rules, are applied.
+ */
+public class CartPricing {
+
+    private final PromotionEngine engine;
+    private final Cart cart;
+    private final CatalogCache catalog;
+    private PromotionEngine.Rules rules;
+
+    private final IntObjectMap<IntLongMap> offers = new IntObjectMap<>(); // product -> promotion -> cents
+    private final IntLongMap discounts = new IntLongMap();                // product -> applied cents
+    private final IntIntMap appliedPromotions = new IntIntMap();          // product -> promotion
+    private long totalDiscountCents = 0;
+
+    public CartPricing(PromotionEngine engine, Cart cart, CatalogCache catalog) {
+        this.engine = engine;
+        this.cart = cart;
+        this.catalog = catalog;
+        this.rules = engine.getRules();
+    }
+
+    /**
+     * Re-evaluates the promotions affected by a change to one line (added, quantity changed
+     * or removed). Call after changing the cart.
+     *
+     * @return The IDs of the products whose discount changed, including lines of a bundle the
+     *         product belongs to. If the rules were reloaded, every line is re-priced and returned.
+     */
+    public IntList lineChanged(Product product) {
+        if (rules != engine.getRules()) {
+            reprice();
+            IntList all = new IntList(cart.size() + 1);
+            for (int i = 0; i < cart.size(); i++) all.add(cart.getProduct(i).getId());
+            if (!all.contains(product.getId())) all.add(product.getId());
+            return all;
+        }
+        IntList touched = new IntList(4);
+        evaluate(product, LocalDateTime.now(), touched);
+        IntList changed = new IntList(touched.size());
+        for (int i = 0; i < touched.size(); i++) {
+            int productId = touched.get(i);
+            if (!changed.contains(productId) && resolve(productId)) changed.add(productId);
+        }
+        return changed;
+    }
+
+    /**
+     * Prices the whole cart again with the current rules and the current time.
+     */
+    public void reprice() {
+        rules = engine.getRules();
+        offers.clear();
+        discounts.clear();
+        appliedPromotions.clear();
+        totalDiscountCents = 0;
+        LocalDateTime now = LocalDateTime.now();
+        IntList touched = new IntList(cart.size());
+        for (int i = 0; i < cart.size(); i++) {
+            evaluate(cart.getProduct(i), now, touched);
+        }
+        for (int i = 0; i < touched.size(); i++) {
+            resolve(touched.get(i));
+        }
+    }
+
+    /**
+     * Forgets all discounts, e.g. after the cart has been checked out.
+     */
+    public void clear() {
+        rules = engine.getRules();
+        offers.clear();
+        discounts.clear();
+        appliedPromotions.clear();
+        totalDiscountCents = 0;
+    }
+
+    private void evaluate(Product product, LocalDateTime now, IntList touched) {
+        touched.add(product.getId());
+        for (int index : rules.forProduct(product.getId())) evaluate(index, product, now, touched);
+        // A promotion on a department covers every category below it
+        CategoryTree categories = catalog.getCategoryTree();
+        for (int categoryId = product.getCategoryId(); categoryId > 0; categoryId = categories.getParentId(categoryId)) {
+            for (int index : rules.forCategory(categoryId)) evaluate(index, product, now, touched);
+        }
+    }
+
+    private void evaluate(int index, Product product, LocalDateTime now, IntList touched) {
+        Promotion promo = rules.get(index);
+        boolean active = promo.isActiveAt(now);
+        if (promo.getType() == Promotion.Type.BUNDLE) {
+            evaluateBundle(index, promo, active, touched);
+        } else {
+            long cents = active ? promo.lineDiscountCents(toCents(product.getPrice()), cart.getQuantityOf(product.getId())) : 0;
+            setOffer(product.getId(), index, cents);
+        }
+    }
+
+    private void evaluateBundle(int index, Promotion promo, boolean active, IntList touched) {
+        int[] productIds = promo.getProductIds();
+        int[] perBundle = promo.getQuantities();
+        long bundles = active ? Long.MAX_VALUE : 0;
+        long regularCents = 0; // Regular price of one bundle
+        for (int i = 0; i < productIds.length; i++) {
+            Product p = cart.findProduct(productIds[i]);
+            if (p == null) {
+                bundles = 0;
+                continue;
+            }
+            bundles = Math.min(bundles, cart.getQuantityOf(productIds[i]) / perBundle[i]);
+            regularCents += toCents(p.getPrice()) * perBundle[i];
+        }
+        long saving = (bundles > 0) ? Math.max(0, (regularCents - promo.getBundlePriceCents()) * bundles) : 0;
+
+        long allocated = 0;
+        int last = -1;
+        for (int i = 0; i < productIds.length; i++) {
+            Product p = cart.findProduct(productIds[i]);
+            if (p == null) {
+                setOffer(productIds[i], index, 0);
+                continue;
+            }
+            long share = (saving > 0) ? saving * toCents(p.getPrice()) * perBundle[i] / regularCents : 0;
+            setOffer(productIds[i], index, share);
+            allocated += share;
+            last = i;
+            touched.add(productIds[i]);
+        }
+        if (saving > 0 && last >= 0 && allocated != saving) {
+            // Rounding remainder goes to one line so the shares add up to the bundle saving
+            int productId = productIds[last];
+            setOffer(productId, index, offers.get(productId).get(index, 0) + saving - allocated);
+        }
+    }
+
+    private void setOffer(int productId, int promotion, long cents) {
+        IntLongMap lineOffers = offers.get(productId);
+        if (cents <= 0) {
+            if (lineOffers != null) {
+                lineOffers.remove(promotion);
+                if (lineOffers.isEmpty()) offers.remove(productId);
+            }
+            return;
+        }
+        if (lineOffers == null) {
+            lineOffers = new IntLongMap(4);
+            offers.put(productId, lineOffers);
+        }
+        lineOffers.put(promotion, cents);
+    }
+
+    /**
+     * Applies the largest offer to a line. Returns true if the line's discount changed.
+     */
+    private boolean resolve(int productId) {
+        long[] best = {0};
+        int[] bestPromotion = {-1};
+        IntLongMap lineOffers = offers.get(productId);
+        if (lineOffers != null) {
+            lineOffers.forEach((promotion, cents) -> {
+                if (cents > best[0] || (cents == best[0] && promotion < bestPromotion[0])) {
+                    best[0] = cents;
+                    bestPromotion[0] = promotion;
+                }
+            });
+        }
+        long old = discounts.get(productId, 0);
+        int oldPromotion = appliedPromotions.get(productId, -1);
+        if (best[0] == old && bestPromotion[0] == oldPromotion) return false;
+
+        totalDiscountCents += best[0] - old;
+        if (best[0] > 0) {
+            discounts.put(productId, best[0]);
+            appliedPromotions.put(productId, bestPromotion[0]);
+        } else {
+            discounts.remove(productId);
+            appliedPromotions.remove(productId);
+        }
+        return true;
+    }
+
+    private static long toCents(double price) {
+        return Math.round(price * 100);
+    }
+
+    // --- Results ---
+
+    public BigDecimal getDiscount(int productId) {
+        return BigDecimal.valueOf(discounts.get(productId, 0), 2);
+    }
+
+    /**
+     * @return The promotion applied to a line, or null if it has no discount.
+     */
+    public Promotion getPromotion(int productId) {
+        int index = appliedPromotions.get(productId, -1);
+        return (index >= 0) ? rules.get(index) : null;
+    }
+
+    public BigDecimal getTotalDiscount() {
+        return BigDecimal.valueOf(totalDiscountCents, 2);
+    }
+}
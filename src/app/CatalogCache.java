@@ -0,0 +1,174 @@
+package app;
+
+import javax.swing.SwingUtilities;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A terminal-local, in-memory copy of the product catalog.
+ * PosFrame browses and searches this cache instead of querying MySQL on every keystroke.
+ * It is kept current by the CatalogSynchronizer, which applies only the rows that changed.
+ * Searches are typo-tolerant and ranked by relevance and popularity (see ProductSearchIndex).
+ * A category filter covers the category's whole subtree (see CategoryTree).
+ */
+public class CatalogCache {
+
+    /**
+     * Notified on the Event Dispatch Thread after a batch of changes has been applied.
+     */
+    public interface Listener {
+        void catalogChanged(IntList changedProductIds, boolean categoriesChanged);
+    }
+
+    private static final int SEARCH_LIMIT = 50;
+
+    private final IntObjectMap<Product> productsById = new IntObjectMap<>(1024);
+    private final Map<String, Product> productsByRef = new HashMap<>();
+    private final Map<Integer, Category> categoriesById = new HashMap<>();
+    private volatile CategoryTree categoryTree = CategoryTree.EMPTY;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ProductSearchIndex searchIndex = new ProductSearchIndex();
+    private volatile IntUnaryOperator popularity = productId -> 0;
+    private boolean loaded = false;
+
+    public void addListener(Listener listener) { listeners.add(listener); }
+    public void removeListener(Listener listener) { listeners.remove(listener); }
+
+    /**
+     * Sets the source of popularity counts used to rank search results, e.g. sales per product.
+     */
+    public void setPopularitySource(IntUnaryOperator popularity) { this.popularity = popularity; }
+
+    /**
+     * @return true once the cache holds a complete copy of the catalog.
+     */
+    public synchronized boolean isLoaded() { return loaded; }
+
+    /**
+     * Replaces the entire contents of the cache, e.g. after the initial full load.
+     */
+    public void replaceAll(List<Category> categories, List<Product> products) {
+        IntList changedIds = new IntList(products.size());
+        synchronized (this) {
+            productsById.forEach((id, p) -> changedIds.add(id));
+            productsById.clear();
+            productsByRef.clear();
+            searchIndex.clear();
+            categoriesById.clear();
+            categories.forEach(c -> categoriesById.put(c.getId(), c));
+            categoryTree = new CategoryTree(new ArrayList<>(categoriesById.values()));
+            for (Product p : products) {
+                putProductLocked(p);
+                changedIds.add(p.getId());
+            }
+            loaded = true;
+        }
+        fireChanged(changedIds, true);
+    }
+
+    /**
+     * Applies a batch of deltas. Any ID in the removed sets that also appears in the
+     * updated lists is treated as an update.
+     */
+    public void applyChanges(List<Product> updatedProducts, Set<Integer> removedProductIds,
+                             List<Category> updatedCategories, Set<Integer> removedCategoryIds) {
+        IntList changedIds = new IntList(updatedProducts.size() + removedProductIds.size());
+        synchronized (this) {
+            for (int id : removedProductIds) {
+                Product old = productsById.remove(id);
+                if (old != null && old.getRefNumber() != null) productsByRef.remove(old.getRefNumber(), old);
+                searchIndex.remove(id);
+                changedIds.add(id);
+            }
+            for (Product p : updatedProducts) {
+                putProductLocked(p);
+                changedIds.add(p.getId());
+            }
+            removedCategoryIds.forEach(categoriesById::remove);
+            updatedCategories.forEach(c -> categoriesById.put(c.getId(), c));
+            if (!updatedCategories.isEmpty() || !removedCategoryIds.isEmpty()) {
+                categoryTree = new CategoryTree(new ArrayList<>(categoriesById.values()));
+            }
+        }
+        boolean categoriesChanged = !updatedCategories.isEmpty() || !removedCategoryIds.isEmpty();
+        if (!changedIds.isEmpty() || categoriesChanged) {
+            fireChanged(changedIds, categoriesChanged);
+        }
+    }
+
+    private void putProductLocked(Product product) {
+        Product old = productsById.put(product.getId(), product);
+        if (old != null && old.getRefNumber() != null) productsByRef.remove(old.getRefNumber(), old);
+        if (product.getRefNumber() != null) productsByRef.put(product.getRefNumber(), product);
+        searchIndex.add(product);
+    }
+
+    /**
+     * @return All cached categories, sorted by name.
+     */
+    public synchronized List<Category> getAllCategories() {
+        List<Category> categories = new ArrayList<>(categoriesById.values());
+        categories.sort(Comparator.comparing(Category::getName, String.CASE_INSENSITIVE_ORDER));
+        return categories;
+    }
+
+    /**
+     * @return The category hierarchy. Replaced (never modified) when categories change.
+     */
+    public CategoryTree getCategoryTree() { return categoryTree; }
+
+    /**
+     * Searches the in-stock products of the local copy. With an empty term, every product
+     * (in the category or below it) is returned sorted by name. Otherwise the best {@value #SEARCH_LIMIT}
+     * matches on name, brand or ref_number are returned best first, tolerating typos.
+     */
+    public synchronized List<Product> searchProducts(String searchTerm, Category category) {
+        String term = (searchTerm == null) ? "" : searchTerm.trim();
+        if (!term.isEmpty()) {
+            return searchIndex.search(term, categoryFilter(category), SEARCH_LIMIT, popularity);
+        }
+        List<Product> result = new ArrayList<>();
+        productsById.forEach((id, p) -> {
+            if (matches(p, "", category)) result.add(p);
+        });
+        result.sort(Comparator.comparing(Product::getName, String.CASE_INSENSITIVE_ORDER));
+        return result;
+    }
+
+    /**
+     * Checks whether a product could be returned by searchProducts for the given filter.
+     */
+    public boolean matches(Product p, String lowerCaseTerm, Category category) {
+        if (p.getQuantity() <= 0) return false;
+        if (category != null && !categoryTree.contains(category.getId(), p.getCategoryId())) return false;
+        String term = lowerCaseTerm.trim();
+        return term.isEmpty() || ProductSearchIndex.matchesQuery(p, term);
+    }
+
+    private IntPredicate categoryFilter(Category category) {
+        if (category == null) return null;
+        CategoryTree tree = categoryTree;
+        int ancestorId = category.getId();
+        return categoryId -> tree.contains(ancestorId, categoryId);
+    }
+
+    /**
+     * @return A copy of every cached product, in no particular order.
+     */
+    public synchronized List<Product> getAllProducts() {
+        return productsById.values();
+    }
+
+    public synchronized Product getProduct(int productId) { return productsById.get(productId); }
+
+    public synchronized Product findByRefNumber(String refNumber) { return productsByRef.get(refNumber); }
+
+    public synchronized int size() { return productsById.size(); }
+
+    private void fireChanged(IntList changedProductIds, boolean categoriesChanged) {
+        if (listeners.isEmpty()) return;
+        SwingUtilities.invokeLater(() -> listeners.forEach(l -> l.catalogChanged(changedProductIds, categoriesChanged)));
+    }
+}
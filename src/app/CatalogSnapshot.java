@@ -0,0 +1,165 @@
+package app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compact, read-only binary copy of the catalog stored on the terminal's disk.
+ * <p>
+ * The snapshot lets the till show the catalog at startup before the database answers, and keep
+ * browsing it if the database is unreachable. The file is read in one go and decoded in one pass
+ * into the categories and products that seed the CatalogCache. It is deliberately not
+ * memory-mapped: Windows cannot replace a file that is still mapped, and a mapping is only
+ * released when the garbage collector gets to it.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ *   header     MAGIC, FORMAT, watermark(long), categoryCount, productCount,
+ *              categoriesOffset, productsOffset, stringsOffset
+ *   categories [id, nameOffset, parentId] * categoryCount
+ *   products   [id, categoryId, quantity, version, price(double),
+ *               nameOffset, refOffset, brandOffset, imageOffset, reorderLevel] * productCount
+ *   strings    [length, UTF-8 bytes] ...   (an offset of -1 means null)
+ * </pre>
+ */
+public class CatalogSnapshot {
+
+    private static final int MAGIC = 0x504F5343; // "POSC"
+    private static final int FORMAT = 4; // 2: added reorderLevel, 3: added category parentId, 4: dropped the ref index
+    private static final int HEADER_SIZE = 36;
+    private static final int CATEGORY_RECORD_SIZE = 12;
+    private static final int PRODUCT_RECORD_SIZE = 44;
+
+    public static final Path DEFAULT_PATH = Paths.get(System.getProperty("user.dir"), "data", "catalog.snapshot");
+
+    private final ByteBuffer buffer;
+    private final long watermark;
+    private final int categoryCount;
+    private final int productCount;
+    private final int categoriesOffset;
+    private final int productsOffset;
+
+    private CatalogSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+            throw new IOException("Not a catalog snapshot (or an unsupported format version)");
+        }
+        this.watermark = buffer.getLong(8);
+        this.categoryCount = buffer.getInt(16);
+        this.productCount = buffer.getInt(20);
+        this.categoriesOffset = buffer.getInt(24);
+        this.productsOffset = buffer.getInt(28);
+    }
+
+    /**
+     * Reads an existing snapshot file into memory. The file is closed again before this returns,
+     * so the next write can replace it on any platform.
+     *
+     * @return The snapshot, or null if the file does not exist or cannot be read.
+     */
+    public static CatalogSnapshot open(Path path) {
+        if (!Files.isRegularFile(path)) return null;
+        try {
+            return new CatalogSnapshot(ByteBuffer.wrap(Files.readAllBytes(path)));
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable catalog snapshot " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes a new snapshot. The file is written beside the target and then moved into place,
+     * so a crash mid-write never leaves a truncated snapshot behind.
+     */
+    public static void write(Path path, long watermark, List<Category> categories, List<Product> products) throws IOException {
+        ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+        DataOutputStream strings = new DataOutputStream(stringBytes);
+
+        int categoriesOffset = HEADER_SIZE;
+        int productsOffset = categoriesOffset + categories.size() * CATEGORY_RECORD_SIZE;
+        int stringsOffset = productsOffset + products.size() * PRODUCT_RECORD_SIZE;
+
+        ByteBuffer records = ByteBuffer.allocate(stringsOffset);
+        records.putInt(MAGIC).putInt(FORMAT).putLong(watermark)
+                .putInt(categories.size()).putInt(products.size())
+                .putInt(categoriesOffset).putInt(productsOffset).putInt(stringsOffset);
+
+        records.position(categoriesOffset);
+        for (Category c : categories) {
+            records.putInt(c.getId());
+            records.putInt(appendString(strings, stringsOffset, c.getName()));
+            records.putInt(c.getParentId());
+        }
+
+        for (Product p : products) {
+            records.putInt(p.getId()).putInt(p.getCategoryId()).putInt(p.getQuantity()).putInt(p.getVersion())
+                    .putDouble(p.getPrice());
+            records.putInt(appendString(strings, stringsOffset, p.getName()));
+            records.putInt(appendString(strings, stringsOffset, p.getRefNumber()));
+            records.putInt(appendString(strings, stringsOffset, p.getBrand()));
+            records.putInt(appendString(strings, stringsOffset, p.getImagePath()));
+            records.putInt(p.getReorderLevel());
+        }
+
+        Files.createDirectories(path.getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            records.flip();
+            while (records.hasRemaining()) channel.write(records);
+            ByteBuffer heap = ByteBuffer.wrap(stringBytes.toByteArray());
+            while (heap.hasRemaining()) channel.write(heap);
+            channel.force(false);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int appendString(DataOutputStream strings, int stringsOffset, String value) throws IOException {
+        if (value == null) return -1;
+        int offset = stringsOffset + strings.size();
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        strings.writeInt(bytes.length);
+        strings.write(bytes);
+        return offset;
+    }
+
+    public long getWatermark() { return watermark; }
+
+    private Product readProduct(int index) {
+        int record = productsOffset + index * PRODUCT_RECORD_SIZE;
+        return new Product(buffer.getInt(record), readString(buffer.getInt(record + 24)), buffer.getDouble(record + 16),
+                readString(buffer.getInt(record + 28)), readString(buffer.getInt(record + 32)), readString(buffer.getInt(record + 36)),
+                buffer.getInt(record + 4), buffer.getInt(record + 40), buffer.getInt(record + 8), buffer.getInt(record + 12));
+    }
+
+    private Category readCategory(int index) {
+        int record = categoriesOffset + index * CATEGORY_RECORD_SIZE;
+        return new Category(buffer.getInt(record), readString(buffer.getInt(record + 4)), buffer.getInt(record + 8));
+    }
+
+    private String readString(int offset) {
+        if (offset < 0) return null;
+        int length = buffer.getInt(offset);
+        byte[] bytes = new byte[length];
+        buffer.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public List<Product> readAllProducts() {
+        List<Product> products = new ArrayList<>(productCount);
+        for (int i = 0; i < productCount; i++) products.add(readProduct(i));
+        return products;
+    }
+
+    public List<Category> readAllCategories() {
+        List<Category> categories = new ArrayList<>(categoryCount);
+        for (int i = 0; i < categoryCount; i++) categories.add(readCategory(i));
+        return categories;
+    }
+}
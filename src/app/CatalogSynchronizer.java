@@ -0,0 +1,330 @@
+package app;
+
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a CatalogCache in step with the database without re-reading the whole catalog.
+ * <p>
+ * Every insert, update and delete on the products and categories tables is recorded by
+ * triggers in the catalog_changes log (created by SchemaManager). This class remembers the highest
+ * sequence number it has applied (the watermark) and, every few seconds, fetches only the
+ * log entries above it together with the rows they point to. A poll with no changes is a
+ * single indexed range query returning nothing.
+ * <p>
+ * Sequence numbers are handed out when a change is made but become visible when its transaction
+ * commits, so a long transaction (a bulk reprice, a large worksheet) can commit lower numbers after
+ * the watermark has already passed them. Every number skipped over is therefore remembered as a
+ * gap and read again on each poll until it shows up, or until it is old enough to be a rolled-back
+ * transaction that will never commit.
+ * <p>
+ * The cache is also saved as a CatalogSnapshot. At startup the snapshot is loaded before the
+ * database is contacted, and syncing resumes from the snapshot's watermark.
+ */
+public class CatalogSynchronizer {
+
+    private static final long POLL_INTERVAL_MS = 3000;
+    private static final int MAX_CHANGES_PER_POLL = 1000;
+    private static final long SNAPSHOT_INTERVAL_MS = 30000;
+    private static final long GAP_TIMEOUT_MS = Long.getLong("pos.catalog.gapTimeoutSeconds", 600) * 1000;
+    private static final int MAX_GAPS = 200;           // More open gaps than this: reload everything instead
+    private static final int FULL_LOAD_GAP_SCAN = 10_000; // Log entries checked for gaps after a full load
+
+    private final Inventory inventory;
+    private final CatalogCache cache;
+    private ScheduledExecutorService scheduler;
+    private long watermark = -1; // Highest sequence number applied; -1 means a full load is required
+    private final TreeMap<Long, long[]> gaps = new TreeMap<>(); // first missing seq -> {last missing seq, time first seen}
+    private boolean verifyWatermark = false; // true if the watermark came from a snapshot
+    private boolean snapshotDirty = false;
+    private long lastSnapshotWrite = 0;
+
+    public CatalogSynchronizer(Inventory inventory, CatalogCache cache) {
+        this.inventory = inventory;
+        this.cache = cache;
+    }
+
+    /**
+     * Starts the background synchronizer. It first loads the local snapshot, then the first run
+     * brings it up to date (or performs a full load of the catalog if there is no snapshot).
+     */
+    public synchronized void start() {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "catalog-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.execute(this::loadSnapshot); // Decoding a large catalog must not hold up the caller (the EDT)
+        scheduler.scheduleWithFixedDelay(this::syncSafely, 0, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a sync now instead of at the next poll, e.g. after this terminal made a bulk change.
+     */
+    public synchronized void requestSync() {
+        if (scheduler != null) scheduler.execute(this::syncSafely);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private synchronized void loadSnapshot() {
+        CatalogSnapshot snapshot = CatalogSnapshot.open(CatalogSnapshot.DEFAULT_PATH);
+        if (snapshot == null) return;
+        ProductRegistry registry = inventory.getProductRegistry();
+        List<Product> products = snapshot.readAllProducts();
+        products.replaceAll(registry::canonicalize);
+        cache.replaceAll(snapshot.readAllCategories(), products);
+        watermark = snapshot.getWatermark();
+        verifyWatermark = true;
+    }
+
+    private void syncSafely() {
+        QueryMonitor.Action action = QueryMonitor.action("catalog sync");
+        try {
+            sync();
+        } catch (SQLException e) {
+            // The database may be briefly unavailable; keep serving the cached catalog and retry next poll.
+            System.err.println("Catalog sync failed: " + e.getMessage());
+        } finally {
+            action.close();
+        }
+    }
+
+    /**
+     * Brings the cache up to date. Safe to call from any thread, but normally run by the scheduler.
+     */
+    public synchronized void sync() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (verifyWatermark) {
+                verifyWatermark = false;
+                if (!isLogContinuousFrom(conn, watermark)) watermark = -1;
+            }
+            if (watermark < 0) {
+                fullLoad(conn);
+            } else {
+                // Drain the log in bounded batches so a long outage does not produce one huge query
+                while (pollChanges(conn) == MAX_CHANGES_PER_POLL) {
+                    // keep going until we are caught up
+                }
+            }
+        }
+        if (snapshotDirty && System.currentTimeMillis() - lastSnapshotWrite >= SNAPSHOT_INTERVAL_MS) {
+            writeSnapshot();
+        }
+    }
+
+    /**
+     * Checks that every change after the given watermark is still in the log, i.e. that old
+     * entries purged from catalog_changes did not include any we have not applied.
+     */
+    private boolean isLogContinuousFrom(Connection conn, long from) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(seq), MAX(seq) FROM catalog_changes")) {
+            rs.next();
+            long min = rs.getLong(1);
+            if (rs.wasNull()) return false; // Empty log: cannot tell what was missed
+            long max = rs.getLong(2);
+            return min <= from + 1 && max >= from;
+        }
+    }
+
+    /**
+     * @return The watermark below which every change has been applied: just below the oldest open
+     *         gap. Resuming from it after a restart re-reads a few changes, which is harmless.
+     */
+    private long safeWatermark() {
+        return gaps.isEmpty() ? watermark : gaps.firstKey() - 1;
+    }
+
+    private void writeSnapshot() {
+        try {
+            CatalogSnapshot.write(CatalogSnapshot.DEFAULT_PATH, safeWatermark(), cache.getAllCategories(), cache.getAllProducts());
+            snapshotDirty = false;
+        } catch (IOException e) {
+            System.err.println("Could not write catalog snapshot: " + e.getMessage());
+        }
+        lastSnapshotWrite = System.currentTimeMillis();
+    }
+
+    private void fullLoad(Connection conn) throws SQLException {
+        // Read the watermark first: anything that changes during the load is re-applied on the next poll.
+        long startWatermark;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(seq), 0) FROM catalog_changes")) {
+            rs.next();
+            startWatermark = rs.getLong(1);
+        }
+        // Numbers missing from the recent log may belong to transactions still running
+        gaps.clear();
+        long seen = -1;
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT seq FROM catalog_changes WHERE seq > ? AND seq <= ? ORDER BY seq")) {
+            pstmt.setLong(1, startWatermark - FULL_LOAD_GAP_SCAN);
+            pstmt.setLong(2, startWatermark);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    long seq = rs.getLong(1);
+                    if (seen >= 0 && seq > seen + 1) addGap(seen + 1, seq - 1);
+                    seen = seq;
+                }
+            }
+        }
+        while (gaps.size() > MAX_GAPS / 2) gaps.pollFirstEntry(); // Old ones are most likely rollbacks
+
+        List<Category> categories = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM categories")) {
+            while (rs.next()) {
+                categories.add(new Category(rs.getInt("id"), rs.getString("name"), rs.getInt("parent_id")));
+            }
+        }
+
+        List<Product> products = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM products")) {
+            while (rs.next()) {
+                products.add(inventory.mapResultSetToProduct(rs));
+            }
+        }
+
+        cache.replaceAll(categories, products);
+        watermark = startWatermark;
+        snapshotDirty = true;
+        lastSnapshotWrite = 0; // Write the fresh snapshot right away
+    }
+
+    /**
+     * Applies one batch of changes above the watermark and of changes that filled a gap.
+     *
+     * @return The number of log entries consumed.
+     */
+    private int pollChanges(Connection conn) throws SQLException {
+        Set<Integer> productIds = new LinkedHashSet<>();
+        Set<Integer> categoryIds = new LinkedHashSet<>();
+        List<Long> seqs = new ArrayList<>();
+        int count = 0;
+
+        expireGaps();
+        if (gaps.size() > MAX_GAPS) {
+            System.err.println("Catalog sync: too many missing log entries, reloading the catalog");
+            fullLoad(conn);
+            return 0;
+        }
+        // Each gap is a primary key range, so this stays an indexed read of the new entries
+        StringBuilder sql = new StringBuilder("SELECT seq, entity, entity_id FROM catalog_changes WHERE seq > ?");
+        for (int i = 0; i < gaps.size(); i++) sql.append(" OR seq BETWEEN ? AND ?");
+        sql.append(" ORDER BY seq LIMIT ?");
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int param = 1;
+            pstmt.setLong(param++, watermark);
+            for (Map.Entry<Long, long[]> gap : gaps.entrySet()) {
+                pstmt.setLong(param++, gap.getKey());
+                pstmt.setLong(param++, gap.getValue()[0]);
+            }
+            pstmt.setInt(param, MAX_CHANGES_PER_POLL);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    seqs.add(rs.getLong("seq"));
+                    int entityId = rs.getInt("entity_id");
+                    if ("category".equals(rs.getString("entity"))) {
+                        categoryIds.add(entityId);
+                    } else {
+                        productIds.add(entityId);
+                    }
+                    count++;
+                }
+            }
+        }
+        if (count == 0) return 0;
+
+        // IDs that are in the log but no longer in the table were deleted
+        List<Product> products = new ArrayList<>();
+        Set<Integer> removedProducts = new HashSet<>(productIds);
+        if (!productIds.isEmpty()) {
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM products WHERE id IN (" + placeholders(productIds.size()) + ")")) {
+                bindIds(pstmt, productIds);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        Product p = inventory.mapResultSetToProduct(rs);
+                        products.add(p);
+                        removedProducts.remove(p.getId());
+                    }
+                }
+            }
+        }
+
+        List<Category> categories = new ArrayList<>();
+        Set<Integer> removedCategories = new HashSet<>(categoryIds);
+        if (!categoryIds.isEmpty()) {
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM categories WHERE id IN (" + placeholders(categoryIds.size()) + ")")) {
+                bindIds(pstmt, categoryIds);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        Category c = new Category(rs.getInt("id"), rs.getString("name"), rs.getInt("parent_id"));
+                        categories.add(c);
+                        removedCategories.remove(c.getId());
+                    }
+                }
+            }
+        }
+
+        removedProducts.forEach(inventory.getProductRegistry()::remove);
+        cache.applyChanges(products, removedProducts, categories, removedCategories);
+        seqs.forEach(this::markSeen); // Only once applied, so a failed poll is simply repeated
+        snapshotDirty = true;
+        return count;
+    }
+
+    /**
+     * Moves the watermark up to a sequence number just read, remembering any numbers skipped over
+     * as a gap, or closes the part of a gap that the number filled.
+     */
+    private void markSeen(long seq) {
+        if (seq > watermark) {
+            if (seq > watermark + 1) addGap(watermark + 1, seq - 1);
+            watermark = seq;
+            return;
+        }
+        Map.Entry<Long, long[]> gap = gaps.floorEntry(seq);
+        if (gap == null || gap.getValue()[0] < seq) return; // Already applied
+        long from = gap.getKey();
+        long to = gap.getValue()[0];
+        long firstSeen = gap.getValue()[1];
+        gaps.remove(from);
+        if (from < seq) gaps.put(from, new long[]{seq - 1, firstSeen});
+        if (seq < to) gaps.put(seq + 1, new long[]{to, firstSeen});
+    }
+
+    private void addGap(long from, long to) {
+        gaps.put(from, new long[]{to, System.currentTimeMillis()});
+    }
+
+    /**
+     * Forgets gaps open for longer than any transaction runs; those numbers were rolled back (or
+     * purged from the log) and will never appear.
+     */
+    private void expireGaps() {
+        long cutoff = System.currentTimeMillis() - GAP_TIMEOUT_MS;
+        gaps.values().removeIf(gap -> gap[1] < cutoff);
+    }
+
+    private static String placeholders(int n) {
+        return String.join(",", Collections.nCopies(n, "?"));
+    }
+
+    private static void bindIds(PreparedStatement pstmt, Collection<Integer> ids) throws SQLException {
+        int i = 1;
+        for (int id : ids) {
+            pstmt.setInt(i++, id);
+        }
+    }
+}
@@ -5,14 +5,21 @@ import java.util.Objects;
 public class Category {
     private final int id;
     private final String name;
+    private final int parentId; // 0 for a top-level category
 
     public Category(int id, String name) {
+        this(id, name, 0);
+    }
+
+    public Category(int id, String name, int parentId) {
         this.id = id;
         this.name = name;
+        this.parentId = parentId;
     }
 
     public int getId() { return id; }
     public String getName() { return name; }
+    public int getParentId() { return parentId; }
 
     @Override
     public String toString() { return name; } // Important for JList and JComboBox display
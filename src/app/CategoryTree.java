@@ -0,0 +1,115 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An immutable in-memory copy of the category hierarchy (departments, aisles, categories).
+ * <p>
+ * Every category is numbered in a depth-first walk, and each category's subtree is the interval
+ * of numbers from itself to its last descendant (nested intervals). Checking whether a product's
+ * category lies under a selected one is therefore two comparisons, no matter how deep the tree.
+ * Categories whose parent is missing, or that form a cycle, are treated as top-level.
+ * <p>
+ * The database keeps the same hierarchy as a closure table (category_closure) for its queries;
+ * this class serves the terminal-local catalog and the category trees in the UI.
+ */
+public class CategoryTree {
+
+    public static final CategoryTree EMPTY = new CategoryTree(List.of());
+
+    private final IntObjectMap<Category> byId;
+    private final IntObjectMap<List<Category>> children = new IntObjectMap<>();
+    private final List<Category> roots = new ArrayList<>();
+    private final IntIntMap parents = new IntIntMap();
+    private final IntIntMap enter = new IntIntMap(); // Depth-first number
+    private final IntIntMap exit = new IntIntMap();  // Number of the last category in the subtree
+    private final IntIntMap depths = new IntIntMap();
+    private final List<Category> ordered;            // Depth-first, children by name
+
+    public CategoryTree(List<Category> categories) {
+        byId = new IntObjectMap<>(categories.size());
+        categories.forEach(c -> byId.put(c.getId(), c));
+        Comparator<Category> byName = Comparator.comparing(Category::getName, String.CASE_INSENSITIVE_ORDER);
+        for (Category c : categories) {
+            if (c.getParentId() > 0 && byId.containsKey(c.getParentId()) && c.getParentId() != c.getId()) {
+                List<Category> siblings = children.get(c.getParentId());
+                if (siblings == null) {
+                    siblings = new ArrayList<>();
+                    children.put(c.getParentId(), siblings);
+                }
+                siblings.add(c);
+            }
+        }
+        children.forEach((id, list) -> list.sort(byName));
+
+        ordered = new ArrayList<>(categories.size());
+        List<Category> candidates = new ArrayList<>(categories);
+        candidates.sort(byName);
+        for (Category c : candidates) {
+            if (!byId.containsKey(c.getParentId()) || c.getParentId() == c.getId()) addRoot(c);
+        }
+        // Anything not reached is part of a cycle; break it at the first member by name
+        for (Category c : candidates) {
+            if (!enter.containsKey(c.getId())) addRoot(c);
+        }
+    }
+
+    private void addRoot(Category root) {
+        roots.add(root);
+        number(root, 0, 0);
+    }
+
+    private void number(Category category, int parentId, int depth) {
+        int id = category.getId();
+        enter.put(id, ordered.size());
+        parents.put(id, parentId);
+        depths.put(id, depth);
+        ordered.add(category);
+        for (Category child : getChildren(id)) {
+            if (!enter.containsKey(child.getId())) number(child, id, depth + 1);
+        }
+        exit.put(id, ordered.size() - 1);
+    }
+
+    public Category getCategory(int id) { return byId.get(id); }
+
+    /** @return The top-level categories, sorted by name. */
+    public List<Category> getRoots() { return roots; }
+
+    /** @return The direct subcategories, sorted by name. */
+    public List<Category> getChildren(int categoryId) {
+        List<Category> list = children.get(categoryId);
+        return (list != null) ? list : List.of();
+    }
+
+    /** @return The parent's ID, or 0 for a top-level category. */
+    public int getParentId(int categoryId) { return parents.get(categoryId, 0); }
+
+    public int getDepth(int categoryId) { return depths.get(categoryId, 0); }
+
+    /** @return Every category, each followed by its subtree, for indented lists. */
+    public List<Category> getAllInTreeOrder() { return ordered; }
+
+    /**
+     * @return true if the category is the ancestor itself or lies anywhere below it.
+     */
+    public boolean contains(int ancestorId, int categoryId) {
+        int position = enter.get(categoryId, -1);
+        return position >= 0 && position >= enter.get(ancestorId, Integer.MAX_VALUE) && position <= exit.get(ancestorId, -1);
+    }
+
+    /**
+     * @return The category names from the top down, e.g. "Beverages / Soft Drinks / Cola".
+     */
+    public String getPathName(int categoryId) {
+        StringBuilder path = new StringBuilder();
+        for (int id = categoryId; id > 0; id = getParentId(id)) {
+            Category c = byId.get(id);
+            if (c == null) break;
+            path.insert(0, (path.length() > 0) ? c.getName() + " / " : c.getName());
+        }
+        return path.toString();
+    }
+}
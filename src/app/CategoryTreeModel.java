@@ -0,0 +1,108 @@
+package app;
+
+import javax.swing.*;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * A JTree model that reads the category hierarchy straight from a CategoryTree. No tree nodes are
+ * built up front: JTree only asks for the children of the nodes it shows, so a large catalog
+ * costs nothing until a department is expanded. The root is a label such as "All Products";
+ * every other node is a Category.
+ */
+public class CategoryTreeModel implements TreeModel {
+
+    private final Object root;
+    private final List<TreeModelListener> listeners = new CopyOnWriteArrayList<>();
+    private CategoryTree categories = CategoryTree.EMPTY;
+
+    public CategoryTreeModel(Object root) {
+        this.root = root;
+    }
+
+    /**
+     * Shows a new hierarchy in the view, keeping the selection and the expanded categories that
+     * still exist.
+     */
+    public void reload(JTree view, CategoryTree categories) {
+        List<Integer> expanded = new ArrayList<>();
+        Enumeration<TreePath> paths = view.getExpandedDescendants(new TreePath(root));
+        if (paths != null) {
+            while (paths.hasMoreElements()) {
+                Object node = paths.nextElement().getLastPathComponent();
+                if (node instanceof Category c) expanded.add(c.getId());
+            }
+        }
+        TreePath selection = view.getSelectionPath();
+        Object selected = (selection != null) ? selection.getLastPathComponent() : null;
+
+        this.categories = categories;
+        TreeModelEvent event = new TreeModelEvent(this, new Object[]{root});
+        listeners.forEach(l -> l.treeStructureChanged(event));
+
+        for (int id : expanded) {
+            TreePath path = pathTo(id);
+            if (path != null) view.expandPath(path);
+        }
+        TreePath newSelection = (selected instanceof Category c) ? pathTo(c.getId()) : (selected == root ? new TreePath(root) : null);
+        if (newSelection != null) view.setSelectionPath(newSelection); else view.clearSelection();
+    }
+
+    /**
+     * @return The path from the root to a category, or null if it no longer exists.
+     */
+    public TreePath pathTo(int categoryId) {
+        if (categories.getCategory(categoryId) == null) return null;
+        List<Object> nodes = new ArrayList<>();
+        for (int id = categoryId; id > 0; id = categories.getParentId(id)) {
+            nodes.add(0, categories.getCategory(id));
+        }
+        nodes.add(0, root);
+        return new TreePath(nodes.toArray());
+    }
+
+    private List<Category> childrenOf(Object parent) {
+        if (parent == root) return categories.getRoots();
+        return (parent instanceof Category c) ? categories.getChildren(c.getId()) : List.of();
+    }
+
+    @Override public Object getRoot() { return root; }
+    @Override public Object getChild(Object parent, int index) { return childrenOf(parent).get(index); }
+    @Override public int getChildCount(Object parent) { return childrenOf(parent).size(); }
+    @Override public boolean isLeaf(Object node) { return node != root && childrenOf(node).isEmpty(); }
+    @Override public int getIndexOfChild(Object parent, Object child) { return childrenOf(parent).indexOf(child); }
+    @Override public void valueForPathChanged(TreePath path, Object newValue) { } // Not editable
+    @Override public void addTreeModelListener(TreeModelListener l) { listeners.add(l); }
+    @Override public void removeTreeModelListener(TreeModelListener l) { listeners.remove(l); }
+
+    /**
+     * Shows categories in a list or combo box indented by their depth, for a flat list in
+     * CategoryTree.getAllInTreeOrder() order. The closed combo box shows the full path.
+     */
+    public static class IndentedRenderer extends DefaultListCellRenderer {
+        private final Supplier<CategoryTree> categories;
+
+        public IndentedRenderer(Supplier<CategoryTree> categories) {
+            this.categories = categories;
+        }
+
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+            super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+            if (value instanceof Category c) {
+                CategoryTree tree = categories.get();
+                if (tree.getCategory(c.getId()) == null) setText(c.getName());
+                else setText(index < 0 ? tree.getPathName(c.getId()) : "    ".repeat(tree.getDepth(c.getId())) + c.getName());
+            }
+            return this;
+        }
+    }
+}
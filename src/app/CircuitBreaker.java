@@ -0,0 +1,66 @@
+package app;
+
+/**
+ * A simple circuit breaker guarding calls to the database.
+ * <p>
+ * After {@code failureThreshold} consecutive failures the breaker opens and callers fail fast
+ * (and fall back to cached data) instead of waiting for timeouts. Once {@code openMillis} has
+ * passed, a single trial call is let through; its outcome closes or re-opens the breaker.
+ */
+public class CircuitBreaker {
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAt = 0;
+
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * @return true if the call may proceed, false if it should fail fast.
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt >= openMillis) {
+                    state = State.HALF_OPEN; // Let exactly one trial call through
+                    return true;
+                }
+                return false;
+            default:
+                return false; // A trial call is already in flight
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            System.err.println("Circuit '" + name + "' closed: database is responding again.");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            System.err.println("Circuit '" + name + "' opened after " + consecutiveFailures + " failure(s); serving cached data for " + openMillis + " ms.");
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+}
@@ -0,0 +1,119 @@
+package app;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the allocation rate of the primitive maps (IntIntMap, IntLongMap, IntObjectMap) with
+ * java.util.HashMap on the workloads they replace: cart quantities, per-product cent totals and
+ * product lookups by ID. Not part of the application; run it by hand after changing the maps:
+ * <pre>
+ *   java -cp out app.CollectionsBenchmark [operations]
+ * </pre>
+ * An operation is one update and one read of a key. Each workload is run a few times to warm up
+ * before it is measured. Bytes are counted per thread with com.sun.management.ThreadMXBean, so
+ * the numbers are only printed on JVMs that support it (HotSpot and OpenJ9 do).
+ */
+public final class CollectionsBenchmark {
+
+    private static final int PRODUCTS = 2_000; // A large catalog; IDs above 127 are never in Integer's cache
+    private static final int WARMUP_ROUNDS = 5;
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+    private static long sink; // Keeps the JIT from dropping the work
+
+    private CollectionsBenchmark() {}
+
+    public static void main(String[] args) {
+        int operations = (args.length > 0) ? Integer.parseInt(args[0]) : 5_000_000;
+        if (THREADS == null) {
+            System.err.println("Per-thread allocation counting is not available on this JVM");
+            return;
+        }
+        int[] keys = new int[operations];
+        Random random = new Random(42);
+        for (int i = 0; i < operations; i++) keys[i] = 1_000 + random.nextInt(PRODUCTS);
+
+        System.out.printf("%,d operations over %,d product IDs%n%n", operations, PRODUCTS);
+        System.out.printf("%-44s %14s %10s %8s%n", "workload", "bytes", "bytes/op", "ms");
+        measure("quantities  IntIntMap", operations, () -> intInt(keys));
+        measure("quantities  HashMap<Integer,Integer>", operations, () -> boxedIntInt(keys));
+        measure("cents       IntLongMap", operations, () -> intLong(keys));
+        measure("cents       HashMap<Integer,Long>", operations, () -> boxedIntLong(keys));
+        measure("lookups     IntObjectMap", operations, () -> intObject(keys));
+        measure("lookups     HashMap<Integer,String>", operations, () -> boxedIntObject(keys));
+        System.out.printf("%n(checksum %d)%n", sink);
+    }
+
+    private static void measure(String name, int operations, Runnable workload) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) workload.run();
+        long thread = Thread.currentThread().getId();
+        long bytesBefore = THREADS.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        workload.run();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        long bytes = THREADS.getThreadAllocatedBytes(thread) - bytesBefore;
+        System.out.printf("%-44s %,14d %10.2f %8d%n", name, bytes, (double) bytes / operations, elapsedMs);
+    }
+
+    // --- Workloads (one update and one read per key) ---
+
+    private static void intInt(int[] keys) {
+        IntIntMap map = new IntIntMap(PRODUCTS);
+        for (int key : keys) {
+            map.put(key, map.get(key, 0) + 1);
+            sink += map.get(key, 0);
+        }
+    }
+
+    private static void boxedIntInt(int[] keys) {
+        Map<Integer, Integer> map = new HashMap<>(PRODUCTS * 2);
+        for (int key : keys) {
+            map.put(key, map.getOrDefault(key, 0) + 1);
+            sink += map.get(key);
+        }
+    }
+
+    private static void intLong(int[] keys) {
+        IntLongMap map = new IntLongMap(PRODUCTS);
+        for (int key : keys) {
+            map.addTo(key, key);
+            sink += map.get(key, 0);
+        }
+    }
+
+    private static void boxedIntLong(int[] keys) {
+        Map<Integer, Long> map = new HashMap<>(PRODUCTS * 2);
+        for (int key : keys) {
+            map.merge(key, (long) key, Long::sum);
+            sink += map.get(key);
+        }
+    }
+
+    private static void intObject(int[] keys) {
+        IntObjectMap<String> map = new IntObjectMap<>(PRODUCTS);
+        for (int key : keys) {
+            if (map.get(key) == null) map.put(key, "product");
+            sink += map.get(key).length();
+        }
+    }
+
+    private static void boxedIntObject(int[] keys) {
+        Map<Integer, String> map = new HashMap<>(PRODUCTS * 2);
+        for (int key : keys) {
+            map.putIfAbsent(key, "product");
+            sink += map.get(key).length();
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported()) return null;
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+}
@@ -1,6 +1,8 @@
 package app;
 
 import javax.swing.*;
+import javax.swing.border.TitledBorder;
+import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.net.URL;
 
@@ -13,13 +15,40 @@ public class DashboardFrame extends JFrame {
 
     private final Inventory inventory;
     private final SalesLogger salesLogger;
+    private final SalesIndex salesIndex;
+    private final TopSellers topSellers;
+    private final BoughtTogether boughtTogether;
+    private final PromotionEngine promotionEngine;
+    private final CatalogCache catalogCache;
+    private final CatalogSynchronizer catalogSynchronizer;
+    private final LowStockIndex lowStockIndex;
+    private final DemandForecaster demandForecaster;
+    private final ParkedCarts parkedCarts;
+
+    private DefaultTableModel lowStockTableModel;
+    private TitledBorder lowStockBorder;
 
     public DashboardFrame() {
         this.inventory = new Inventory();
-        this.salesLogger = new SalesLogger();
+        this.salesIndex = new SalesIndex();
+        this.topSellers = new TopSellers(TopSellers.DEFAULT_PATH);
+        this.boughtTogether = new BoughtTogether();
+        this.demandForecaster = new DemandForecaster();
+        this.parkedCarts = new ParkedCarts(ParkedCarts.DEFAULT_PATH);
+        this.salesLogger = new SalesLogger(salesIndex, topSellers, boughtTogether, demandForecaster);
+        this.catalogCache = new CatalogCache();
+        this.catalogSynchronizer = new CatalogSynchronizer(inventory, catalogCache);
+        catalogSynchronizer.start(); // Loads the catalog in the background and keeps it current
+        salesIndex.startBuilding();
+        boughtTogether.startBuilding();
+        demandForecaster.startBuilding();
+        this.promotionEngine = new PromotionEngine();
+        promotionEngine.start(); // Loads the promotion rules in the background and reloads them every few minutes
+        catalogCache.setPopularitySource(salesIndex::countSales); // Rank search results by sales
+        this.lowStockIndex = new LowStockIndex(catalogCache); // Follows stock changes from the catalog sync
 
         setTitle("POS System - Main Dashboard");
-        setSize(800, 600);
+        setSize(800, 760);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
 
@@ -41,11 +70,14 @@ public class DashboardFrame extends JFrame {
         buttonPanel.add(reportsButton);
 
         mainPanel.add(buttonPanel, BorderLayout.CENTER);
+        mainPanel.add(createLowStockPanel(), BorderLayout.SOUTH);
         add(mainPanel);
+        refreshLowStock();
+        lowStockIndex.addListener(this::refreshLowStock);
 
         // --- Action Listeners for Navigation ---
         posButton.addActionListener(e -> {
-            PosFrame posFrame = new PosFrame(inventory, salesLogger);
+            PosFrame posFrame = new PosFrame(inventory, salesLogger, catalogCache, topSellers, boughtTogether, promotionEngine, parkedCarts);
             posFrame.addWindowListener(new java.awt.event.WindowAdapter() {
                 @Override
                 public void windowClosed(java.awt.event.WindowEvent windowEvent) {
@@ -58,13 +90,13 @@ public class DashboardFrame extends JFrame {
 
         inventoryButton.addActionListener(e -> {
             this.setVisible(false);
-            InventoryDialog inventoryDialog = new InventoryDialog(this, inventory);
+            InventoryDialog inventoryDialog = new InventoryDialog(this, inventory, salesIndex, catalogCache, catalogSynchronizer);
             inventoryDialog.setVisible(true);
             this.setVisible(true);
         });
 
         reportsButton.addActionListener(e -> {
-            SalesReportFrame reportFrame = new SalesReportFrame(inventory);
+            SalesReportFrame reportFrame = new SalesReportFrame(inventory, catalogCache, salesIndex);
             reportFrame.addWindowListener(new java.awt.event.WindowAdapter() {
                 @Override
                 public void windowClosed(java.awt.event.WindowEvent windowEvent) {
@@ -76,6 +108,40 @@ public class DashboardFrame extends JFrame {
         });
     }
 
+    private JPanel createLowStockPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        lowStockBorder = BorderFactory.createTitledBorder("Low Stock");
+        panel.setBorder(lowStockBorder);
+        lowStockTableModel = new DefaultTableModel(new String[]{"Product", "Ref #", "In Stock", "Reorder At", "Short By"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JScrollPane scrollPane = new JScrollPane(new JTable(lowStockTableModel));
+        scrollPane.setPreferredSize(new Dimension(0, 160));
+        panel.add(scrollPane, BorderLayout.CENTER);
+        JButton forecastButton = new JButton("Reorder Forecast...");
+        forecastButton.addActionListener(e -> new ForecastDialog(this, demandForecaster, catalogCache).setVisible(true));
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(forecastButton);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+        return panel;
+    }
+
+    /**
+     * Shows the products at or below their reorder level, from the in-memory index.
+     */
+    private void refreshLowStock() {
+        lowStockTableModel.setRowCount(0);
+        for (Product p : lowStockIndex.getLowStock()) {
+            lowStockTableModel.addRow(new Object[]{p.getName(), p.getRefNumber(), p.getQuantity(), p.getReorderLevel(),
+                    p.getReorderLevel() - p.getQuantity()});
+        }
+        lowStockBorder.setTitle("Low Stock (" + lowStockTableModel.getRowCount() + ")");
+        repaint();
+    }
+
     /**
      * A helper method to create and style a dashboard button with an icon.
      */
@@ -84,9 +150,7 @@ public class DashboardFrame extends JFrame {
         URL iconUrl = getClass().getResource(iconPath);
 
         if (iconUrl != null) {
-            ImageIcon icon = new ImageIcon(iconUrl);
-            Image img = icon.getImage().getScaledInstance(128, 128, Image.SCALE_SMOOTH);
-            button.setIcon(new ImageIcon(img));
+            button.setIcon(ImageLoader.loadScaled(iconUrl, 128));
         } else {
             System.err.println("Couldn't find dashboard icon: " + iconPath);
         }
@@ -1,17 +1,224 @@
 package app;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.SQLException;
+import java.sql.*;
+import java.util.Properties;
+import java.util.concurrent.Executor;
 
+/**
+ * Hands out JDBC connections, routed by what they will be used for.
+ * <ul>
+ *   <li>{@link #getConnection()} always goes to the primary. Use it for checkout writes and for any
+ *       read that must see the latest data (stock checks, catalog sync).</li>
+ *   <li>{@link #getReportingConnection()} goes to the reporting replica when one is configured and
+ *       healthy, so long report scans do not compete with the lanes. If the replica is down or lags
+ *       too far behind, it falls back to the primary (unless fallback is switched off).</li>
+ * </ul>
+ * Every connection has a connect timeout and a network (read) timeout, so a stalled server can
+ * never hang the caller indefinitely. Callers on the Event Dispatch Thread pass a tighter budget.
+ * A circuit breaker around the primary makes calls fail fast while the database is unreachable.
+ * All connections are wrapped by QueryMonitor, which logs slow queries and N+1 patterns.
+ * <p>
+ * Every setting can be overridden with a system property, e.g. {@code -Dpos.db.replica.url=...}.
+ */
 public class DatabaseConnection {
     // --- DATABASE CONNECTION DETAILS ---
     // Make sure to change these to your actual database details
-    private static final String URL = "jdbc:mysql://localhost:3306/pos_system"; // Your DB name
-    private static final String USER = "root"; // Your DB username
-    private static final String PASSWORD = ""; // Your DB password (often empty for local XAMPP)
+    private static final String URL = System.getProperty("pos.db.url", "jdbc:mysql://localhost:3306/pos_system"); // Your DB name
+    private static final String USER = System.getProperty("pos.db.user", "root"); // Your DB username
+    private static final String PASSWORD = System.getProperty("pos.db.password", ""); // Your DB password (often empty for local XAMPP)
+
+    // --- REPORTING REPLICA (optional) ---
+    // Leave the URL empty to run reports against the primary.
+    private static final String REPLICA_URL = System.getProperty("pos.db.replica.url", "");
+    private static final String REPLICA_USER = System.getProperty("pos.db.replica.user", USER);
+    private static final String REPLICA_PASSWORD = System.getProperty("pos.db.replica.password", PASSWORD);
+    private static final boolean REPLICA_FALLBACK = Boolean.parseBoolean(System.getProperty("pos.db.replica.fallback", "true"));
+    private static final long REPLICA_MAX_LAG_SECONDS = Long.getLong("pos.db.replica.maxLagSeconds", 30);
+    private static final long REPLICA_CHECK_INTERVAL_MS = 10_000;
+
+    // --- TIMEOUTS (milliseconds) ---
+    private static final int CONNECT_TIMEOUT_MS = Integer.getInteger("pos.db.connectTimeoutMs", 2000);
+    public static final int DEFAULT_TIMEOUT_MS = Integer.getInteger("pos.db.timeoutMs", 10_000);
+    public static final int INTERACTIVE_TIMEOUT_MS = Integer.getInteger("pos.db.interactiveTimeoutMs", 800);
+    public static final int REPORT_TIMEOUT_MS = Integer.getInteger("pos.db.reportTimeoutMs", 30_000);
+
+    private static final CircuitBreaker PRIMARY_BREAKER = new CircuitBreaker("primary", 3, 10_000);
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    private static volatile boolean replicaHealthy = true;
+    private static volatile long replicaCheckedAt = 0;
+
+    /**
+     * Thrown straight away, without contacting the database, while the circuit breaker is open.
+     */
+    public static class CircuitOpenException extends SQLTransientConnectionException {
+        CircuitOpenException() {
+            super("Database circuit breaker is open");
+        }
+    }
+
+    /**
+     * Thrown when no connection to the primary could be opened. The circuit breaker has already
+     * counted it, so recordFailure ignores it. The driver's exception is the cause.
+     */
+    public static class ConnectFailedException extends SQLTransientConnectionException {
+        ConnectFailedException(SQLException cause) {
+            super(cause.getMessage(), cause.getSQLState(), cause.getErrorCode(), cause);
+        }
+    }
 
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        return getConnection(DEFAULT_TIMEOUT_MS);
+    }
+
+    /**
+     * Opens a connection to the primary whose reads give up after the given budget.
+     *
+     * @throws CircuitOpenException    Immediately, if the circuit breaker is open.
+     * @throws ConnectFailedException If the primary could not be reached (counted by the breaker).
+     */
+    public static Connection getConnection(int timeoutMillis) throws SQLException {
+        if (!PRIMARY_BREAKER.allowRequest()) {
+            throw new CircuitOpenException();
+        }
+        try {
+            Connection conn = open(URL, USER, PASSWORD, timeoutMillis);
+            if (PRIMARY_BREAKER.isOpen()) {
+                PRIMARY_BREAKER.recordSuccess(); // The half-open trial got through
+            }
+            return conn;
+        } catch (SQLException e) {
+            PRIMARY_BREAKER.recordFailure();
+            throw new ConnectFailedException(e);
+        }
+    }
+
+    private static Connection open(String url, String user, String password, int timeoutMillis) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("user", user);
+        props.setProperty("password", password);
+        // An interactive caller's budget covers connecting too, not just the reads
+        props.setProperty("connectTimeout", String.valueOf(Math.min(CONNECT_TIMEOUT_MS, timeoutMillis)));
+        props.setProperty("rewriteBatchedStatements", "true"); // Send JDBC batches as multi-row INSERTs
+        Connection conn = DriverManager.getConnection(url, props);
+        conn.setNetworkTimeout(DIRECT_EXECUTOR, timeoutMillis);
+        return QueryMonitor.wrap(conn);
+    }
+
+    /**
+     * Records that a call on the primary completed, closing the circuit breaker if it was open.
+     */
+    public static void recordSuccess() {
+        PRIMARY_BREAKER.recordSuccess();
+    }
+
+    /**
+     * Records a failed call on the primary. Only connectivity problems and timeouts count
+     * towards opening the breaker; ordinary SQL errors do not. Failures to connect were already
+     * counted by getConnection, and a fail-fast rejection is not a call to the database at all
+     * (counting it would re-open a half-open breaker while its trial call is still running).
+     */
+    public static void recordFailure(SQLException e) {
+        if (e instanceof CircuitOpenException || e instanceof ConnectFailedException) return;
+        if (isConnectivityFailure(e)) {
+            PRIMARY_BREAKER.recordFailure();
+        }
+    }
+
+    private static boolean isConnectivityFailure(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLTimeoutException
+                || e instanceof SQLTransientConnectionException
+                || e instanceof SQLNonTransientConnectionException
+                || (state != null && state.startsWith("08")); // Connection exception class
+    }
+
+    /**
+     * Returns a connection for report and analytics queries, which may see data a few seconds old.
+     *
+     * @throws SQLException If no suitable database is reachable.
+     */
+    public static Connection getReportingConnection() throws SQLException {
+        if (REPLICA_URL.isEmpty()) {
+            return getConnection(REPORT_TIMEOUT_MS);
+        }
+        boolean recheck = System.currentTimeMillis() - replicaCheckedAt >= REPLICA_CHECK_INTERVAL_MS;
+        if (replicaHealthy || recheck) {
+            Connection conn = null;
+            try {
+                conn = open(REPLICA_URL, REPLICA_USER, REPLICA_PASSWORD, REPORT_TIMEOUT_MS);
+                if (recheck) {
+                    replicaHealthy = isLagAcceptable(conn);
+                    replicaCheckedAt = System.currentTimeMillis();
+                }
+                if (replicaHealthy) {
+                    return conn;
+                }
+                conn.close();
+            } catch (SQLException e) {
+                System.err.println("Reporting replica unavailable: " + e.getMessage());
+                replicaHealthy = false;
+                replicaCheckedAt = System.currentTimeMillis();
+                if (conn != null) conn.close();
+                if (!REPLICA_FALLBACK) throw e;
+            }
+        }
+        if (!REPLICA_FALLBACK) {
+            throw new SQLException("Reporting replica is lagging or down, and fallback to the primary is disabled.");
+        }
+        return getConnection(REPORT_TIMEOUT_MS);
+    }
+
+    /**
+     * Checks how far the replica is behind the primary. A server that is not a replica at all
+     * (e.g. a second local instance used for testing) reports no status and is always accepted.
+     * MySQL before 8.0.22 and MariaDB (as bundled with XAMPP) only know SHOW SLAVE STATUS, and
+     * MariaDB calls the lag column Seconds_Behind_Master even where it accepts SHOW REPLICA STATUS.
+     * If the status cannot be read at all, the replica is treated as unhealthy.
+     */
+    private static boolean isLagAcceptable(Connection conn) {
+        try (Statement stmt = conn.createStatement()) {
+            ResultSet rs;
+            try {
+                rs = stmt.executeQuery("SHOW REPLICA STATUS");
+            } catch (SQLException e) {
+                rs = stmt.executeQuery("SHOW SLAVE STATUS");
+            }
+            try (ResultSet status = rs) {
+                if (!status.next()) return true;
+                int lagColumn = findColumn(status, "Seconds_Behind_Source", "Seconds_Behind_Master");
+                if (lagColumn < 0) {
+                    System.err.println("Reporting replica does not report its lag; routing reports to the primary.");
+                    return false;
+                }
+                long lag = status.getLong(lagColumn);
+                if (status.wasNull()) {
+                    System.err.println("Reporting replica is not replicating; routing reports to the primary.");
+                    return false; // Replication thread stopped
+                }
+                if (lag > REPLICA_MAX_LAG_SECONDS) {
+                    System.err.println("Reporting replica is " + lag + "s behind; routing reports to the primary.");
+                    return false;
+                }
+                return true;
+            }
+        } catch (SQLException e) {
+            // E.g. missing REPLICATION CLIENT privilege: without the lag, the replica cannot be trusted
+            System.err.println("Could not read the reporting replica's status (" + e.getMessage() + "); routing reports to the primary.");
+            return false;
+        }
+    }
+
+    /**
+     * @return The index of the first of the named columns present in the result, or -1.
+     */
+    private static int findColumn(ResultSet rs, String... names) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        for (String name : names) {
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                if (name.equalsIgnoreCase(meta.getColumnLabel(i))) return i;
+            }
+        }
+        return -1;
     }
-}
\ No newline at end of file
+}
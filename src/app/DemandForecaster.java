@@ -0,0 +1,295 @@
+package app;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Forecasts daily demand per product from the sales history, for projected stock-out dates and
+ * suggested reorder quantities.
+ * <p>
+ * Each product has a small model: an exponentially weighted moving average (EWMA) of its
+ * deseasonalised daily sales, an EWMA of the sales on each day of the week (whose ratios to
+ * their average give the day-of-week factors) and an EWMA of the squared forecast error. Days
+ * without sales count as zero. During the first days of a product's history the weights start at
+ * 1/n, so the level begins as a plain average instead of being pulled towards zero.
+ * <p>
+ * The models are fitted from sale_items in the background at startup and again on demand: one
+ * streaming pass sums the quantities per product and day, then the products are fitted in
+ * parallel. SalesLogger adds this terminal's sales as they are committed; they are folded into
+ * the model when their day is over. Sales from other terminals are picked up by the next
+ * recompute.
+ */
+public class DemandForecaster {
+
+    private static final double ALPHA = Double.parseDouble(System.getProperty("pos.forecast.alpha", "0.1"));
+    private static final double GAMMA = Double.parseDouble(System.getProperty("pos.forecast.weekdayAlpha", "0.1"));
+    public static final int LEAD_TIME_DAYS = Integer.getInteger("pos.forecast.leadTimeDays", 7);
+    public static final int COVER_DAYS = Integer.getInteger("pos.forecast.coverDays", 14);
+    private static final double SERVICE_FACTOR = 1.65; // Safety stock for about a 95% chance of not running out
+    private static final int HORIZON_DAYS = 365;
+    private static final double MIN_SEASON = 0.05;     // Keeps a "closed on Sundays" factor from dividing by zero
+    private static final int TO_DAYS_EPOCH = 719528;   // MySQL TO_DAYS('1970-01-01')
+
+    /**
+     * The outlook for one product.
+     */
+    public static class Forecast {
+        private final double dailyAverage;
+        private final double nextWeek;
+        private final LocalDate stockOutDate;
+        private final int suggestedOrder;
+
+        Forecast(double dailyAverage, double nextWeek, LocalDate stockOutDate, int suggestedOrder) {
+            this.dailyAverage = dailyAverage;
+            this.nextWeek = nextWeek;
+            this.stockOutDate = stockOutDate;
+            this.suggestedOrder = suggestedOrder;
+        }
+
+        public double getDailyAverage() { return dailyAverage; }
+        public double getNextWeek() { return nextWeek; }
+        /** @return The first day the stock is expected to run out, or null if not within a year. */
+        public LocalDate getStockOutDate() { return stockOutDate; }
+        public int getSuggestedOrder() { return suggestedOrder; }
+    }
+
+    private IntObjectMap<Model> models = new IntObjectMap<>(1024);
+    private volatile boolean ready = false;
+    // Sales SalesLogger recorded while a rebuild was reading the history: sale ID -> (product -> quantity)
+    private IntObjectMap<IntIntMap> loggedDuringBuild;
+
+    /**
+     * Fits the models on a background thread.
+     */
+    public void startBuilding() {
+        Thread builder = new Thread(() -> {
+            try {
+                rebuild();
+            } catch (SQLException e) {
+                System.err.println("Demand forecasts not available: " + e.getMessage());
+            }
+        }, "demand-forecast");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Fits every product's model again from the full sales history. Runs on the calling thread
+     * and replaces the models when done; forecasts keep using the old models meanwhile.
+     *
+     * @return The number of sale_items rows read.
+     */
+    public long rebuild() throws SQLException {
+        synchronized (this) {
+            if (loggedDuringBuild != null) throw new SQLException("A recompute is already running");
+            loggedDuringBuild = new IntObjectMap<>();
+        }
+        try {
+            int today = (int) LocalDate.now().toEpochDay();
+            IntIntMap saleDays = new IntIntMap(4096);
+            IntObjectMap<IntIntMap> dailyByProduct = new IntObjectMap<>(1024);
+            long rows = 0;
+            try (Connection conn = DatabaseConnection.getReportingConnection()) {
+                try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    stmt.setFetchSize(Integer.MIN_VALUE); // Connector/J: stream rows instead of buffering them all
+                    try (ResultSet rs = stmt.executeQuery("SELECT id, TO_DAYS(sale_date) FROM sales")) {
+                        while (rs.next()) {
+                            saleDays.put(rs.getInt(1), Math.min(today, rs.getInt(2) - TO_DAYS_EPOCH));
+                        }
+                    }
+                }
+                try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    stmt.setFetchSize(Integer.MIN_VALUE);
+                    try (ResultSet rs = stmt.executeQuery("SELECT sale_id, product_id, quantity FROM sale_items")) {
+                        while (rs.next()) {
+                            // Items of a sale committed after the sales were read are skipped consistently
+                            int day = saleDays.get(rs.getInt(1), Integer.MIN_VALUE);
+                            if (day == Integer.MIN_VALUE) continue;
+                            int productId = rs.getInt(2);
+                            IntIntMap daily = dailyByProduct.get(productId);
+                            if (daily == null) {
+                                daily = new IntIntMap(64);
+                                dailyByProduct.put(productId, daily);
+                            }
+                            daily.addTo(day, rs.getInt(3));
+                            rows++;
+                        }
+                    }
+                }
+            }
+
+            IntObjectMap<Model> fitted = fit(dailyByProduct, today);
+            synchronized (this) {
+                // Add this terminal's sales that the history read above did not include
+                loggedDuringBuild.forEach((saleId, lines) -> {
+                    if (!saleDays.containsKey(saleId)) lines.forEach((productId, quantity) -> model(fitted, productId, today).add(today, quantity));
+                });
+                models = fitted;
+                ready = true;
+            }
+            return rows;
+        } finally {
+            synchronized (this) {
+                loggedDuringBuild = null;
+            }
+        }
+    }
+
+    /**
+     * Fits one model per product, in parallel. Days before today are folded in; today's sales
+     * are kept as the open day.
+     */
+    static IntObjectMap<Model> fit(IntObjectMap<IntIntMap> dailyByProduct, int today) {
+        int[] productIds = new int[dailyByProduct.size()];
+        List<IntIntMap> series = new ArrayList<>(productIds.length);
+        int[] next = {0};
+        dailyByProduct.forEach((productId, daily) -> {
+            productIds[next[0]++] = productId;
+            series.add(daily);
+        });
+        Model[] results = new Model[productIds.length];
+        IntStream.range(0, productIds.length).parallel().forEach(i -> results[i] = fitOne(series.get(i), today));
+
+        IntObjectMap<Model> fitted = new IntObjectMap<>(productIds.length);
+        for (int i = 0; i < productIds.length; i++) {
+            fitted.put(productIds[i], results[i]);
+        }
+        return fitted;
+    }
+
+    private static Model fitOne(IntIntMap daily, int today) {
+        // Pack (day, quantity) pairs into longs so one primitive sort orders the series by day
+        long[] entries = new long[daily.size()];
+        int[] n = {0};
+        daily.forEach((day, quantity) -> entries[n[0]++] = ((long) day << 32) | (quantity & 0xFFFFFFFFL));
+        Arrays.sort(entries);
+        Model model = new Model((int) (entries[0] >> 32));
+        for (long entry : entries) {
+            model.add((int) (entry >> 32), (int) entry);
+        }
+        model.advanceTo(today);
+        return model;
+    }
+
+    /**
+     * Adds a sale committed by this terminal.
+     */
+    public synchronized void addSale(int saleId, Cart cart) {
+        int today = (int) LocalDate.now().toEpochDay();
+        IntIntMap lines = (loggedDuringBuild != null) ? new IntIntMap(cart.size()) : null;
+        cart.forEach((product, quantity) -> {
+            model(models, product.getId(), today).add(today, quantity);
+            if (lines != null) lines.put(product.getId(), quantity);
+        });
+        if (lines != null) loggedDuringBuild.put(saleId, lines);
+    }
+
+    private static Model model(IntObjectMap<Model> models, int productId, int today) {
+        Model model = models.get(productId);
+        if (model == null) {
+            model = new Model(today);
+            models.put(productId, model);
+        }
+        return model;
+    }
+
+    /**
+     * Projects a product's stock forward with its forecast daily demand.
+     *
+     * @return The forecast, or null if the product has never sold or the models are not built yet.
+     */
+    public synchronized Forecast forecast(Product product) {
+        if (!ready) return null;
+        Model model = models.get(product.getId());
+        if (model == null) return null;
+        LocalDate date = LocalDate.now();
+        model.advanceTo((int) date.toEpochDay());
+
+        // The rest of today is what is still expected beyond what has already sold
+        double stock = product.getQuantity() - Math.max(0, model.expected(date) - model.openQuantity);
+        LocalDate stockOutDate = (stock <= 0) ? date : null;
+        double nextWeek = 0, orderPeriod = 0;
+        for (int d = 1; d <= HORIZON_DAYS && (stockOutDate == null || d <= LEAD_TIME_DAYS + COVER_DAYS); d++) {
+            LocalDate day = date.plusDays(d);
+            double demand = model.expected(day);
+            if (d <= 7) nextWeek += demand;
+            if (d <= LEAD_TIME_DAYS + COVER_DAYS) orderPeriod += demand;
+            stock -= demand;
+            if (stock <= 0 && stockOutDate == null) stockOutDate = day;
+        }
+
+        // Order up to the demand until the next delivery after this one, plus safety stock
+        double safety = SERVICE_FACTOR * Math.sqrt(model.variance * (LEAD_TIME_DAYS + COVER_DAYS));
+        int suggested = (int) Math.max(0, Math.ceil(orderPeriod + safety - product.getQuantity()));
+        return new Forecast(model.level, nextWeek, stockOutDate, suggested);
+    }
+
+    /**
+     * One product's demand statistics. Days are epoch days; sales of the open (latest) day are
+     * summed until a later day starts.
+     */
+    static class Model {
+        double level = 0;
+        final double[] weekdayMeans = new double[7]; // Monday first
+        double variance = 0;
+        int days = 0;          // Days folded in so far
+        int openDay;
+        int openQuantity = 0;
+
+        Model(int firstDay) {
+            this.openDay = firstDay;
+        }
+
+        void add(int day, int quantity) {
+            advanceTo(day);
+            openQuantity += quantity;
+        }
+
+        /**
+         * Folds in the open day and any days without sales before the given one.
+         */
+        void advanceTo(int day) {
+            while (openDay < day) {
+                fold(openDay, openQuantity);
+                openDay++;
+                openQuantity = 0;
+            }
+        }
+
+        private void fold(int day, double quantity) {
+            int dow = Math.floorMod(day + 3, 7); // Epoch day 0 was a Thursday
+            days++;
+            double a = Math.max(ALPHA, 1.0 / days);
+            // The factor from before this day, so a busy day does not also shrink its own factor
+            double factor = season(dow);
+            if (days > 1) {
+                double error = quantity - level * factor;
+                variance += a * (error * error - variance);
+            }
+            level += a * (quantity / factor - level);
+            // A ratio of averages rather than an average of ratios, which stays stable for slow movers
+            weekdayMeans[dow] += Math.max(GAMMA, 1.0 / ((days - 1) / 7 + 1)) * (quantity - weekdayMeans[dow]);
+        }
+
+        /**
+         * @return How a weekday's sales compare to an average day, e.g. 1.5 for a busy Saturday.
+         */
+        double season(int dow) {
+            double sum = 0;
+            for (double mean : weekdayMeans) sum += mean;
+            return (sum > 0) ? Math.max(MIN_SEASON, weekdayMeans[dow] * 7 / sum) : 1;
+        }
+
+        double expected(LocalDate date) {
+            return level * season(date.getDayOfWeek().getValue() - 1);
+        }
+    }
+}
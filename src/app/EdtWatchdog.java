@@ -0,0 +1,253 @@
+package app;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.FileHandler;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Detects events that block the Event Dispatch Thread long enough for a cashier to notice.
+ * <p>
+ * A custom EventQueue timestamps every dispatched event. A daemon thread checks several times per
+ * budget whether the current event has run over; while it has, the EDT stack is sampled. When the
+ * event finishes, the stall is attributed to the application method seen most often at the top of
+ * those samples (e.g. {@code Inventory.getStockCount}), logged with its stack, and added to the
+ * per-location totals that are written as a report every few minutes to logs/edt-stalls.N.log.
+ * <p>
+ * Modal dialogs dispatch events from inside the event that opened them; that time is not counted
+ * as a stall of the outer event.
+ */
+public final class EdtWatchdog {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("pos.ui.watchdog", "true"));
+    private static final long BUDGET_MS = Long.getLong("pos.ui.stallBudgetMs", 200);
+    private static final long REPORT_INTERVAL_MINUTES = Long.getLong("pos.ui.stallReportMinutes", 5);
+    private static final int REPORT_STACK_DEPTH = 15;
+    private static final Path LOG_DIR = Paths.get(System.getProperty("user.dir"), "logs");
+
+    /** Stall totals for one code location. */
+    private static final class LocationStats {
+        int count;
+        long totalMs;
+        long maxMs;
+        String lastEvent;
+        StackTraceElement[] exampleStack;
+    }
+
+    /** The event currently over budget, with the stack samples taken so far. */
+    private static final class PendingStall {
+        final long seq;
+        final Map<String, Integer> locationSamples = new HashMap<>();
+        final Map<String, StackTraceElement[]> stacks = new HashMap<>();
+
+        PendingStall(long seq) {
+            this.seq = seq;
+        }
+    }
+
+    private static final Logger LOG = createLogger();
+
+    // Written by the EDT, read by the watchdog thread
+    private static volatile Thread edt;
+    private static volatile long dispatchSeq = 0;
+    private static volatile long dispatchStart = 0; // 0 while the EDT is idle
+
+    // Guarded by EdtWatchdog.class
+    private static PendingStall pending;
+    private static final Map<String, LocationStats> stats = new HashMap<>();
+
+    private EdtWatchdog() {}
+
+    private static Logger createLogger() {
+        Logger logger = Logger.getLogger("app.edt");
+        logger.setUseParentHandlers(false);
+        try {
+            Files.createDirectories(LOG_DIR);
+            FileHandler handler = new FileHandler(LOG_DIR.resolve("edt-stalls.%g.log").toString(), 1_000_000, 5, true);
+            handler.setFormatter(new SimpleFormatter());
+            logger.addHandler(handler);
+        } catch (IOException e) {
+            logger.setUseParentHandlers(true); // Fall back to the console
+            System.err.println("Could not open the EDT stall log: " + e.getMessage());
+        }
+        return logger;
+    }
+
+    /**
+     * Installs the monitoring event queue and starts the watchdog thread. Does nothing if
+     * disabled with {@code -Dpos.ui.watchdog=false}.
+     */
+    public static void install() {
+        if (!ENABLED) return;
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new MonitoredEventQueue());
+
+        long tickMs = Math.max(10, BUDGET_MS / 4);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "edt-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(EdtWatchdog::check, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(EdtWatchdog::writeReport, REPORT_INTERVAL_MINUTES, REPORT_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    private static final class MonitoredEventQueue extends EventQueue {
+        // Per nesting depth: the dispatch sequence number and when timing (re)started
+        private long[] seqs = new long[8];
+        private long[] starts = new long[8];
+        private int depth = 0;
+
+        @Override
+        protected void dispatchEvent(AWTEvent event) {
+            edt = Thread.currentThread();
+            if (depth == seqs.length) {
+                seqs = Arrays.copyOf(seqs, depth * 2);
+                starts = Arrays.copyOf(starts, depth * 2);
+            }
+            int level = depth++;
+            begin(level, System.nanoTime());
+            try {
+                super.dispatchEvent(event);
+            } finally {
+                long now = System.nanoTime();
+                long elapsedMs = (now - starts[level]) / 1_000_000;
+                if (elapsedMs >= BUDGET_MS) {
+                    finishStall(seqs[level], elapsedMs, event);
+                }
+                depth = level;
+                if (level > 0) {
+                    begin(level - 1, now); // The outer event resumes; its time in the nested loop is not a stall
+                } else {
+                    dispatchStart = 0;
+                }
+            }
+        }
+
+        private void begin(int level, long now) {
+            seqs[level] = ++dispatchSeq;
+            starts[level] = now;
+            dispatchStart = now;
+        }
+    }
+
+    // --- Watchdog thread ---
+
+    private static void check() {
+        try {
+            long start = dispatchStart;
+            long seq = dispatchSeq;
+            Thread thread = edt;
+            if (start == 0 || thread == null) return;
+            if ((System.nanoTime() - start) / 1_000_000 < BUDGET_MS) return;
+
+            StackTraceElement[] stack = thread.getStackTrace();
+            synchronized (EdtWatchdog.class) {
+                if (dispatchSeq != seq) return; // Finished while we were sampling
+                if (pending == null || pending.seq != seq) {
+                    pending = new PendingStall(seq);
+                }
+                String location = locate(stack);
+                pending.locationSamples.merge(location, 1, Integer::sum);
+                pending.stacks.putIfAbsent(location, stack);
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace(); // Keep the scheduled task alive
+        }
+    }
+
+    private static synchronized void finishStall(long seq, long elapsedMs, AWTEvent event) {
+        String location = "(not sampled)";
+        StackTraceElement[] stack = null;
+        if (pending != null && pending.seq == seq) {
+            int best = 0;
+            for (Map.Entry<String, Integer> e : pending.locationSamples.entrySet()) {
+                if (e.getValue() > best) {
+                    best = e.getValue();
+                    location = e.getKey();
+                }
+            }
+            stack = pending.stacks.get(location);
+            pending = null;
+        }
+        String eventText = describeEvent(event);
+
+        LocationStats s = stats.computeIfAbsent(location, k -> new LocationStats());
+        s.count++;
+        s.totalMs += elapsedMs;
+        s.maxMs = Math.max(s.maxMs, elapsedMs);
+        s.lastEvent = eventText;
+        if (stack != null) s.exampleStack = stack;
+
+        StringBuilder message = new StringBuilder(String.format("EDT stall: %dms in %s while dispatching %s", elapsedMs, location, eventText));
+        appendStack(message, stack);
+        LOG.warning(message.toString());
+
+        PosEvents.EdtStall jfrEvent = new PosEvents.EdtStall();
+        if (jfrEvent.isEnabled()) {
+            jfrEvent.location = location;
+            jfrEvent.event = eventText;
+            jfrEvent.stallMillis = elapsedMs;
+            jfrEvent.commit();
+        }
+    }
+
+    /**
+     * Returns the innermost application frame (e.g. {@code PosFrame.createProductCard}), which is
+     * where the blocking call was made even if the thread is parked deep inside JDBC or Swing.
+     */
+    private static String locate(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            String cls = frame.getClassName();
+            if (cls.startsWith("app.") && !cls.startsWith(EdtWatchdog.class.getName())) {
+                String simple = cls.substring(4);
+                return simple + "." + frame.getMethodName();
+            }
+        }
+        return stack.length > 0 ? stack[0].getClassName() + "." + stack[0].getMethodName() : "(unknown)";
+    }
+
+    private static String describeEvent(AWTEvent event) {
+        String text = event.toString();
+        return text.length() > 160 ? text.substring(0, 160) + "..." : text;
+    }
+
+    private static void appendStack(StringBuilder sb, StackTraceElement[] stack) {
+        if (stack == null) return;
+        for (int i = 0; i < Math.min(stack.length, REPORT_STACK_DEPTH); i++) {
+            sb.append("\n\tat ").append(stack[i]);
+        }
+    }
+
+    // --- Report ---
+
+    private static synchronized void writeReport() {
+        if (stats.isEmpty()) return;
+        List<Map.Entry<String, LocationStats>> entries = new ArrayList<>(stats.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().totalMs, a.getValue().totalMs));
+
+        StringBuilder report = new StringBuilder("EDT stall report (budget " + BUDGET_MS + "ms), worst first:");
+        for (Map.Entry<String, LocationStats> e : entries) {
+            LocationStats s = e.getValue();
+            report.append(String.format("%n  %-50s stalls=%-5d total=%-8dms max=%-6dms avg=%dms",
+                    e.getKey(), s.count, s.totalMs, s.maxMs, s.totalMs / s.count));
+            report.append("\n    last event: ").append(s.lastEvent);
+            appendStack(report, s.exampleStack);
+        }
+        LOG.info(report.toString());
+        stats.clear();
+    }
+}
@@ -0,0 +1,160 @@
+package app;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Lists the products expected to run out, soonest first, with a suggested order quantity for
+ * each. Forecasts come from the in-memory DemandForecaster models and the current stock in the
+ * CatalogCache; Recompute fits the models again from the full sales history.
+ */
+public class ForecastDialog extends JDialog {
+
+    private final DemandForecaster forecaster;
+    private final CatalogCache catalog;
+    private final ForecastTableModel tableModel = new ForecastTableModel();
+    private final JCheckBox reorderOnlyCheckBox;
+    private final JLabel statusLabel;
+    private final JButton recomputeButton;
+
+    public ForecastDialog(Window owner, DemandForecaster forecaster, CatalogCache catalog) {
+        super(owner, "Reorder Forecast", ModalityType.APPLICATION_MODAL);
+        this.forecaster = forecaster;
+        this.catalog = catalog;
+
+        setSize(900, 600);
+        setLocationRelativeTo(owner);
+        setLayout(new BorderLayout(10, 10));
+
+        JPanel northPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        reorderOnlyCheckBox = new JCheckBox("Only products to reorder", true);
+        reorderOnlyCheckBox.addActionListener(e -> refresh());
+        northPanel.add(reorderOnlyCheckBox);
+        northPanel.add(new JLabel(String.format("(lead time %d days, ordering for %d days after delivery)",
+                DemandForecaster.LEAD_TIME_DAYS, DemandForecaster.COVER_DAYS)));
+        add(northPanel, BorderLayout.NORTH);
+
+        add(new JScrollPane(new JTable(tableModel)), BorderLayout.CENTER);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        statusLabel = new JLabel(" ");
+        recomputeButton = new JButton("Recompute from History");
+        recomputeButton.addActionListener(e -> handleRecompute());
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(e -> dispose());
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(recomputeButton);
+        buttonPanel.add(closeButton);
+        southPanel.add(statusLabel, BorderLayout.CENTER);
+        southPanel.add(buttonPanel, BorderLayout.EAST);
+        southPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 10, 10));
+        add(southPanel, BorderLayout.SOUTH);
+
+        refresh();
+    }
+
+    private void refresh() {
+        if (!forecaster.isReady() || !catalog.isLoaded()) {
+            tableModel.setRows(List.of(), List.of());
+            statusLabel.setText("The sales history is still being analysed. Please try again in a moment.");
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        List<Product> products = new ArrayList<>();
+        List<DemandForecaster.Forecast> forecasts = new ArrayList<>();
+        for (Product p : catalog.getAllProducts()) {
+            DemandForecaster.Forecast forecast = forecaster.forecast(p);
+            if (forecast == null) continue;
+            if (reorderOnlyCheckBox.isSelected() && forecast.getSuggestedOrder() == 0) continue;
+            products.add(p);
+            forecasts.add(forecast);
+        }
+
+        // Soonest stock-out first; products not running out within the horizon last
+        Integer[] order = new Integer[products.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparing((Integer i) -> forecasts.get(i).getStockOutDate(),
+                Comparator.nullsLast(Comparator.naturalOrder())));
+        List<Product> sortedProducts = new ArrayList<>(order.length);
+        List<DemandForecaster.Forecast> sortedForecasts = new ArrayList<>(order.length);
+        for (int i : order) {
+            sortedProducts.add(products.get(i));
+            sortedForecasts.add(forecasts.get(i));
+        }
+        tableModel.setRows(sortedProducts, sortedForecasts);
+        long runningOut = sortedForecasts.stream()
+                .filter(f -> f.getStockOutDate() != null && ChronoUnit.DAYS.between(today, f.getStockOutDate()) <= DemandForecaster.LEAD_TIME_DAYS)
+                .count();
+        statusLabel.setText(String.format("%d products shown, %d expected to run out before an order placed today arrives.",
+                sortedProducts.size(), runningOut));
+    }
+
+    private void handleRecompute() {
+        recomputeButton.setEnabled(false);
+        statusLabel.setText("Recomputing from the sales history...");
+        long start = System.nanoTime();
+
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                return forecaster.rebuild();
+            }
+
+            @Override
+            protected void done() {
+                recomputeButton.setEnabled(true);
+                try {
+                    long rows = get();
+                    refresh();
+                    statusLabel.setText(String.format("%s Recomputed from %,d sale items in %.1f s.",
+                            statusLabel.getText(), rows, (System.nanoTime() - start) / 1e9));
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                    JOptionPane.showMessageDialog(ForecastDialog.this, "The sales history could not be read: " + e.getCause().getMessage(),
+                            "Recompute Failed", JOptionPane.ERROR_MESSAGE);
+                    statusLabel.setText(" ");
+                }
+            }
+        }.execute();
+    }
+
+    private static class ForecastTableModel extends AbstractTableModel {
+        private final String[] columns = {"Ref #", "Product", "In Stock", "Avg / Day", "Next 7 Days", "Stock-Out", "Days Left", "Suggested Order"};
+        private List<Product> products = List.of();
+        private List<DemandForecaster.Forecast> forecasts = List.of();
+
+        void setRows(List<Product> products, List<DemandForecaster.Forecast> forecasts) {
+            this.products = products;
+            this.forecasts = forecasts;
+            fireTableDataChanged();
+        }
+
+        @Override public int getRowCount() { return products.size(); }
+        @Override public int getColumnCount() { return columns.length; }
+        @Override public String getColumnName(int column) { return columns[column]; }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Product p = products.get(row);
+            DemandForecaster.Forecast f = forecasts.get(row);
+            switch (column) {
+                case 0: return p.getRefNumber();
+                case 1: return p.getName();
+                case 2: return p.getQuantity();
+                case 3: return String.format("%.1f", f.getDailyAverage());
+                case 4: return String.format("%.0f", f.getNextWeek());
+                case 5: return (f.getStockOutDate() != null) ? f.getStockOutDate().toString() : "-";
+                case 6: return (f.getStockOutDate() != null) ? String.valueOf(ChronoUnit.DAYS.between(LocalDate.now(), f.getStockOutDate())) : "-";
+                default: return f.getSuggestedOrder();
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package app;
+
+import java.sql.*;
+
+/**
+ * Hands out IDs for a table from blocks reserved in the id_blocks sequence table (hi/lo allocation).
+ * <p>
+ * Each terminal reserves a block of IDs with one atomic UPDATE and then assigns them locally, so an
+ * ID is known before the row is written and no generated-keys round trip is needed. Blocks are
+ * reserved outside the caller's transaction; an ID from a rolled-back sale is simply skipped.
+ * IDs are unique across terminals but only ordered within a terminal.
+ */
+public class IdBlockAllocator {
+
+    private final String table;
+    private final int blockSize;
+    private int next = 0;
+    private int end = 0; // Exclusive end of the current block
+
+    /**
+     * @param table     The table the IDs are for. Also used as the key in id_blocks.
+     * @param blockSize How many IDs to reserve per database round trip.
+     */
+    public IdBlockAllocator(String table, int blockSize) {
+        this.table = table;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * @return The next unused ID.
+     * @throws SQLException If a new block could not be reserved.
+     */
+    public synchronized int nextId() throws SQLException {
+        if (next >= end) {
+            reserveBlock();
+        }
+        return next++;
+    }
+
+    private void reserveBlock() throws SQLException {
+        // LAST_INSERT_ID(expr) makes the new value readable on this connection without a race
+        String reserveSql = "UPDATE id_blocks SET next_value = LAST_INSERT_ID(next_value + ?) WHERE name = ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(reserveSql)) {
+            pstmt.setInt(1, blockSize);
+            pstmt.setString(2, table);
+            if (pstmt.executeUpdate() == 0) {
+                initialiseSequence(conn);
+                pstmt.executeUpdate();
+            }
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT LAST_INSERT_ID()")) {
+                rs.next();
+                end = rs.getInt(1);
+                next = end - blockSize;
+            }
+        }
+    }
+
+    /**
+     * Creates the sequence row on first use, starting after the highest existing ID.
+     */
+    private void initialiseSequence(Connection conn) throws SQLException {
+        String sql = "INSERT IGNORE INTO id_blocks (name, next_value) SELECT ?, COALESCE(MAX(id), 0) + 1 FROM " + table;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, table);
+            pstmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package app;
+
+import javax.swing.ImageIcon;
+import java.awt.Image;
+import java.io.File;
+import java.net.URL;
+
+/**
+ * Loads and scales images for the UI, recording each decode as a JFR event.
+ */
+public final class ImageLoader {
+
+    private ImageLoader() {}
+
+    /**
+     * Loads an image from the classpath and scales it to a square of the given size.
+     *
+     * @return The scaled icon, or null if the URL is null.
+     */
+    public static ImageIcon loadScaled(URL url, int size) {
+        PosEvents.ImageDecode event = new PosEvents.ImageDecode();
+        event.begin();
+        ImageIcon icon = (url != null) ? scale(new ImageIcon(url), size) : null;
+        commit(event, String.valueOf(url), size, icon != null);
+        return icon;
+    }
+
+    /**
+     * Loads an image from a file and scales it to a square of the given size.
+     *
+     * @return The scaled icon, or null if the file does not exist.
+     */
+    public static ImageIcon loadScaled(File file, int size) {
+        PosEvents.ImageDecode event = new PosEvents.ImageDecode();
+        event.begin();
+        boolean found = file != null && file.exists();
+        ImageIcon icon = found ? scale(new ImageIcon(file.getAbsolutePath()), size) : null;
+        commit(event, String.valueOf(file), size, found);
+        return icon;
+    }
+
+    private static ImageIcon scale(ImageIcon icon, int size) {
+        return new ImageIcon(icon.getImage().getScaledInstance(size, size, Image.SCALE_SMOOTH));
+    }
+
+    private static void commit(PosEvents.ImageDecode event, String source, int size, boolean found) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.width = size;
+            event.height = size;
+            event.found = found;
+            event.commit();
+        }
+    }
+}
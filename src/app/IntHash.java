@@ -0,0 +1,42 @@
+package app;
+
+/**
+ * Shared hashing helpers for the primitive int-keyed collections (IntIntMap, IntLongMap, IntObjectMap).
+ * All of them use open addressing with linear probing over power-of-two tables.
+ */
+final class IntHash {
+
+    /** Marks an unused slot. This key value cannot be stored in the maps. */
+    static final int EMPTY = Integer.MIN_VALUE;
+
+    private IntHash() {}
+
+    static int mix(int key) {
+        int h = key * 0x9E3779B9; // Fibonacci hashing spreads sequential IDs across the table
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return The smallest power-of-two table size that holds the expected entries below 75% load.
+     */
+    static int tableSizeFor(int expectedSize) {
+        int needed = Math.max(4, (int) Math.ceil(expectedSize / 0.75) + 1);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+    static boolean needsResize(int size, int capacity) {
+        return (size + 1) * 4 > capacity * 3;
+    }
+
+    static void checkKey(int key) {
+        if (key == EMPTY) throw new IllegalArgumentException("Key " + key + " is reserved");
+    }
+
+    /**
+     * @return true if the entry at {@code next} (whose home slot is {@code home}) may move back
+     *         into {@code hole} during backward-shift deletion.
+     */
+    static boolean canShift(int hole, int next, int home, int mask) {
+        return ((next - home) & mask) >= ((next - hole) & mask);
+    }
+}
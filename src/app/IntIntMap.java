@@ -0,0 +1,137 @@
+package app;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from int keys to int values that never boxes.
+ * Used for hot counters such as cart quantities and stock levels.
+ * Integer.MIN_VALUE is reserved and cannot be used as a key.
+ */
+public class IntIntMap {
+
+    /** Receives each entry during forEach. */
+    public interface EntryConsumer {
+        void accept(int key, int value);
+    }
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    public IntIntMap() {
+        this(16);
+    }
+
+    public IntIntMap(int expectedSize) {
+        allocate(IntHash.tableSizeFor(expectedSize));
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, IntHash.EMPTY);
+        size = 0;
+    }
+
+    public int get(int key, int defaultValue) {
+        int slot = find(key);
+        return (slot >= 0) ? values[slot] : defaultValue;
+    }
+
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * @return The previous value, or defaultValue if the key was absent.
+     */
+    public int put(int key, int value, int defaultValue) {
+        int slot = find(key);
+        if (slot >= 0) {
+            int old = values[slot];
+            values[slot] = value;
+            return old;
+        }
+        insert(key, value);
+        return defaultValue;
+    }
+
+    public void put(int key, int value) {
+        put(key, value, 0);
+    }
+
+    /**
+     * Adds a delta to the value for a key, treating an absent key as zero.
+     *
+     * @return The new value.
+     */
+    public int addTo(int key, int delta) {
+        int slot = find(key);
+        if (slot >= 0) return values[slot] += delta;
+        insert(key, delta);
+        return delta;
+    }
+
+    public boolean remove(int key) {
+        int slot = find(key);
+        if (slot < 0) return false;
+        deleteSlot(slot);
+        return true;
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public void clear() {
+        Arrays.fill(keys, IntHash.EMPTY);
+        size = 0;
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != IntHash.EMPTY) consumer.accept(keys[i], values[i]);
+        }
+    }
+
+    private int find(int key) {
+        int mask = keys.length - 1;
+        for (int i = IntHash.mix(key) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == key) return i;
+            if (keys[i] == IntHash.EMPTY) return -1;
+        }
+    }
+
+    private void insert(int key, int value) {
+        IntHash.checkKey(key);
+        if (IntHash.needsResize(size, keys.length)) rehash(keys.length * 2);
+        int mask = keys.length - 1;
+        int i = IntHash.mix(key) & mask;
+        while (keys[i] != IntHash.EMPTY) i = (i + 1) & mask;
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    private void deleteSlot(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != IntHash.EMPTY; next = (next + 1) & mask) {
+            if (IntHash.canShift(hole, next, IntHash.mix(keys[next]) & mask, mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = IntHash.EMPTY;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != IntHash.EMPTY) insert(oldKeys[i], oldValues[i]);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A hash map from int keys to object values that never boxes the key.
+ * Used for ID-keyed lookups such as the product registry, the catalog cache and image caches.
+ * Integer.MIN_VALUE is reserved and cannot be used as a key.
+ *
+ * @param <V> The value type. Null values are not supported.
+ */
+public class IntObjectMap<V> {
+
+    /** Receives each entry during forEach. */
+    public interface EntryConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    public IntObjectMap() {
+        this(16);
+    }
+
+    public IntObjectMap(int expectedSize) {
+        allocate(IntHash.tableSizeFor(expectedSize));
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        Arrays.fill(keys, IntHash.EMPTY);
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int slot = find(key);
+        return (slot >= 0) ? (V) values[slot] : null;
+    }
+
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * @return The previous value, or null if the key was absent.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        int slot = find(key);
+        if (slot >= 0) {
+            V old = (V) values[slot];
+            values[slot] = value;
+            return old;
+        }
+        insert(key, value);
+        return null;
+    }
+
+    /**
+     * @return The removed value, or null if the key was absent.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int slot = find(key);
+        if (slot < 0) return null;
+        V old = (V) values[slot];
+        deleteSlot(slot);
+        return old;
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public void clear() {
+        Arrays.fill(keys, IntHash.EMPTY);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<V> consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != IntHash.EMPTY) consumer.accept(keys[i], (V) values[i]);
+        }
+    }
+
+    /**
+     * @return A new list holding every value, in table order.
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> result = new ArrayList<>(size);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != IntHash.EMPTY) result.add((V) values[i]);
+        }
+        return result;
+    }
+
+    private int find(int key) {
+        int mask = keys.length - 1;
+        for (int i = IntHash.mix(key) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == key) return i;
+            if (keys[i] == IntHash.EMPTY) return -1;
+        }
+    }
+
+    private void insert(int key, Object value) {
+        IntHash.checkKey(key);
+        if (IntHash.needsResize(size, keys.length)) rehash(keys.length * 2);
+        int mask = keys.length - 1;
+        int i = IntHash.mix(key) & mask;
+        while (keys[i] != IntHash.EMPTY) i = (i + 1) & mask;
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    private void deleteSlot(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != IntHash.EMPTY; next = (next + 1) & mask) {
+            if (IntHash.canShift(hole, next, IntHash.mix(keys[next]) & mask, mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = IntHash.EMPTY;
+        values[hole] = null;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != IntHash.EMPTY) insert(oldKeys[i], oldValues[i]);
+        }
+    }
+}
@@ -3,57 +3,94 @@ package app;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * The Data Access Layer for the POS system.
  * This class handles all database interactions related to products and categories.
  * It provides methods for creating, reading, updating, and deleting inventory items.
+ * <p>
+ * The reads used interactively by the till (getAllCategories, getStockCount) run
+ * with a short time budget. If the database is slow or down they return the most recent result
+ * they saw instead of blocking the Event Dispatch Thread.
  */
 public class Inventory {
 
+    // Worksheet lines applied per transaction; keeps the row locks that tills may wait on short
+    private static final int ADJUSTMENT_BATCH_SIZE = 200;
+    // A category and everything below it, resolved through the closure table's primary key
+    private static final String IN_CATEGORY_SUBTREE = "category_id IN (SELECT descendant_id FROM category_closure WHERE ancestor_id = ?)";
+
+    private final ProductRegistry productRegistry = new ProductRegistry();
+
+    // --- Last known good results, served when the database cannot answer in time ---
+    private volatile List<Category> lastCategories = List.of();
+    private final IntIntMap lastKnownStock = new IntIntMap();
+
+    /**
+     * @return The registry holding the canonical Product instance for each ID, shared by all screens.
+     */
+    public ProductRegistry getProductRegistry() {
+        return productRegistry;
+    }
+
     /**
      * A helper method to map a row from a ResultSet to a Product object.
      * This avoids code duplication in methods that fetch product data.
+     * If the registry already holds this row at the same version, that instance is returned
+     * without reading the remaining columns.
      *
      * @param rs The ResultSet currently pointing to a product row.
-     * @return A new Product object populated with data from the ResultSet.
+     * @return The canonical Product object for the row.
      * @throws SQLException If a database access error occurs.
      */
-    private Product mapResultSetToProduct(ResultSet rs) throws SQLException {
-        return new Product(
+    Product mapResultSetToProduct(ResultSet rs) throws SQLException {
+        Product existing = productRegistry.get(rs.getInt("id"));
+        if (existing != null && existing.getVersion() == rs.getInt("version")) {
+            return existing;
+        }
+        return productRegistry.canonicalize(new Product(
                 rs.getInt("id"),
                 rs.getString("name"),
                 rs.getDouble("price"),
                 rs.getString("ref_number"),
                 rs.getString("brand"),
                 rs.getString("image_path"),
-                rs.getInt("category_id")
-        );
+                rs.getInt("category_id"),
+                rs.getInt("reorder_level"),
+                rs.getInt("quantity"),
+                rs.getInt("version")
+        ));
     }
 
     /**
      * Retrieves a list of all categories from the database.
      *
-     * @return A List of Category objects, sorted by name.
+     * @return A List of Category objects, sorted by name. If the database does not answer
+     *         within the interactive budget, the last list successfully read is returned.
      */
     public List<Category> getAllCategories() {
         List<Category> categories = new ArrayList<>();
         String sql = "SELECT * FROM categories ORDER BY name ASC";
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getConnection(DatabaseConnection.INTERACTIVE_TIMEOUT_MS);
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
-                categories.add(new Category(rs.getInt("id"), rs.getString("name")));
+                categories.add(new Category(rs.getInt("id"), rs.getString("name"), rs.getInt("parent_id")));
             }
+            DatabaseConnection.recordSuccess();
         } catch (SQLException e) {
-            e.printStackTrace();
+            DatabaseConnection.recordFailure(e);
+            System.err.println("getAllCategories: serving cached categories (" + e.getMessage() + ")");
+            return lastCategories;
         }
+        lastCategories = List.copyOf(categories);
         return categories;
     }
 
     /**
-     * Retrieves all products belonging to a specific category.
+     * Retrieves all products belonging to a specific category or any of its subcategories.
      * Used primarily by the InventoryDialog.
      *
      * @param category The category to filter by. If null, returns all products.
@@ -62,7 +99,7 @@ public class Inventory {
     public List<Product> getProductsByCategory(Category category) {
         List<Product> products = new ArrayList<>();
         String sql = (category != null)
-                ? "SELECT * FROM products WHERE category_id = ? ORDER BY name ASC"
+                ? "SELECT * FROM products WHERE " + IN_CATEGORY_SUBTREE + " ORDER BY name ASC"
                 // A version to get ALL products regardless of category
                 : "SELECT * FROM products ORDER BY name ASC";
 
@@ -82,41 +119,6 @@ public class Inventory {
         return products;
     }
 
-    /**
-     * Searches for products by name or reference number, with an optional category filter.
-     * Used by the main PosFrame.
-     *
-     * @param searchTerm The text to search for in product names and ref_numbers.
-     * @param category   The category to filter by. Can be null to search all categories.
-     * @return A List of matching Product objects.
-     */
-    public List<Product> searchProducts(String searchTerm, Category category) {
-        List<Product> products = new ArrayList<>();
-        StringBuilder sql = new StringBuilder("SELECT * FROM products WHERE (name LIKE ? OR ref_number LIKE ?) AND quantity > 0");
-        if (category != null) {
-            sql.append(" AND category_id = ?");
-        }
-        sql.append(" ORDER BY name ASC");
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
-            String likeTerm = "%" + searchTerm + "%";
-            pstmt.setString(1, likeTerm);
-            pstmt.setString(2, likeTerm);
-            if (category != null) {
-                pstmt.setInt(3, category.getId());
-            }
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    products.add(mapResultSetToProduct(rs));
-                }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return products;
-    }
-
     /**
      * Adds a new product to the database.
      *
@@ -124,7 +126,7 @@ public class Inventory {
      * @param quantity The initial stock quantity.
      */
     public void addProduct(Product product, int quantity) {
-        String sql = "INSERT INTO products(name, price, ref_number, brand, image_path, quantity, category_id) VALUES(?, ?, ?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO products(name, price, ref_number, brand, image_path, quantity, category_id, reorder_level) VALUES(?, ?, ?, ?, ?, ?, ?, ?)";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, product.getName());
@@ -134,6 +136,7 @@ public class Inventory {
             pstmt.setString(5, product.getImagePath());
             pstmt.setInt(6, quantity);
             pstmt.setInt(7, product.getCategoryId());
+            pstmt.setInt(8, product.getReorderLevel());
             pstmt.executeUpdate();
         } catch (SQLException e) {
             e.printStackTrace();
@@ -141,13 +144,42 @@ public class Inventory {
     }
 
     /**
-     * Updates an existing product's details in the database.
+     * Retrieves the current state of a single product, including its stock and row version.
+     *
+     * @param productId The ID of the product.
+     * @return The Product, or null if it no longer exists.
+     */
+    public Product getProductById(int productId) {
+        String sql = "SELECT * FROM products WHERE id = ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, productId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return mapResultSetToProduct(rs);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Updates an existing product's details using an optimistic version check.
+     * The stock level is adjusted by a delta rather than overwritten, so sales made
+     * by the tills while the product was being edited are not lost.
      *
-     * @param product     The Product object with updated details (must include the correct ID).
-     * @param newQuantity The new stock quantity.
+     * @param product       The Product object with updated details. Its ID and version must
+     *                      match the row that was originally loaded.
+     * @param quantityDelta The change to apply to the current stock (may be negative or zero).
+     * @return true if the row was updated, false if it was changed or deleted by someone else
+     *         since it was loaded (or the delta would make the stock negative).
      */
-    public void updateProduct(Product product, int newQuantity) {
-        String sql = "UPDATE products SET name = ?, price = ?, ref_number = ?, brand = ?, image_path = ?, quantity = ?, category_id = ? WHERE id = ?";
+    public boolean updateProduct(Product product, int quantityDelta) {
+        String sql = "UPDATE products SET name = ?, price = ?, ref_number = ?, brand = ?, image_path = ?, " +
+                "quantity = quantity + ?, category_id = ?, reorder_level = ?, version = version + 1 " +
+                "WHERE id = ? AND version = ? AND quantity + ? >= 0";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, product.getName());
@@ -155,13 +187,17 @@ public class Inventory {
             pstmt.setString(3, product.getRefNumber());
             pstmt.setString(4, product.getBrand());
             pstmt.setString(5, product.getImagePath());
-            pstmt.setInt(6, newQuantity);
+            pstmt.setInt(6, quantityDelta);
             pstmt.setInt(7, product.getCategoryId());
-            pstmt.setInt(8, product.getId()); // WHERE clause uses the product's ID
-            pstmt.executeUpdate();
+            pstmt.setInt(8, product.getReorderLevel());
+            pstmt.setInt(9, product.getId()); // WHERE clause uses the product's ID...
+            pstmt.setInt(10, product.getVersion()); // ...and the version it was loaded at
+            pstmt.setInt(11, quantityDelta);
+            return pstmt.executeUpdate() == 1;
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return false;
     }
 
     /**
@@ -175,6 +211,7 @@ public class Inventory {
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, product.getId());
             pstmt.executeUpdate();
+            productRegistry.remove(product.getId());
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -184,61 +221,439 @@ public class Inventory {
      * Gets the current stock count for a specific product.
      *
      * @param product The product to check.
-     * @return The current quantity in stock.
+     * @return The current quantity in stock. If the database does not answer within the
+     *         interactive budget, the last known quantity is returned.
      */
     public int getStockCount(Product product) {
         String sql = "SELECT quantity FROM products WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getConnection(DatabaseConnection.INTERACTIVE_TIMEOUT_MS);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, product.getId());
             try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("quantity");
+                int quantity = rs.next() ? rs.getInt("quantity") : 0;
+                DatabaseConnection.recordSuccess();
+                synchronized (lastKnownStock) {
+                    lastKnownStock.put(product.getId(), quantity);
                 }
+                return quantity;
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            DatabaseConnection.recordFailure(e);
+            System.err.println("getStockCount: serving last known stock (" + e.getMessage() + ")");
         }
-        return 0;
+        synchronized (lastKnownStock) {
+            if (lastKnownStock.containsKey(product.getId())) {
+                return lastKnownStock.get(product.getId(), 0);
+            }
+        }
+        // Fall back to the stock level of the most recently read row for this product
+        Product known = productRegistry.get(product.getId());
+        return (known != null) ? known.getQuantity() : product.getQuantity();
     }
 
     /**
      * Reduces the stock count of a product after a sale.
+     * The decrement only succeeds if enough stock is still available, so two tills
+     * selling the last unit cannot drive the quantity below zero.
      *
      * @param product         The product that was sold.
      * @param quantityToReduce The number of items sold.
+     * @return true if the stock was reduced, false if there was not enough stock left.
+     */
+    public boolean reduceStock(Product product, int quantityToReduce) {
+        return adjustStock(product, -quantityToReduce);
+    }
+
+    /**
+     * Applies a relative change to a product's stock and bumps its row version.
+     * No row lock is held between reading and writing; the guard in the WHERE clause
+     * acts as the compare-and-set.
+     *
+     * @param product The product whose stock is changing.
+     * @param delta   The change in quantity (negative to remove stock).
+     * @return true if the stock was changed, false if the result would be negative.
      */
-    public void reduceStock(Product product, int quantityToReduce) {
-        String sql = "UPDATE products SET quantity = quantity - ? WHERE id = ?";
+    public boolean adjustStock(Product product, int delta) {
+        String sql = "UPDATE products SET quantity = quantity + ?, version = version + 1 WHERE id = ? AND quantity + ? >= 0";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, quantityToReduce);
+            pstmt.setInt(1, delta);
             pstmt.setInt(2, product.getId());
-            pstmt.executeUpdate();
+            pstmt.setInt(3, delta);
+            return pstmt.executeUpdate() == 1;
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return false;
     }
 
     /**
-     * Retrieves a list of all sales transactions.
-     * Used by the SalesReportFrame.
+     * Takes the quantities of a parked cart out of stock (or, with release, puts them back) in
+     * one transaction, so no other sale can take them in the meantime. A reservation is all or
+     * nothing: if any product does not have enough stock left, nothing is reserved. Each change is
+     * recorded in the stock_adjustments audit table in the same transaction, with reason PARK or
+     * RECALL and the parked cart as the reference, so reserved stock can be accounted for at a
+     * stock take. Runs with the interactive time budget, as the lane waits for it.
      *
+     * @param cartId     The parked cart's ID.
+     * @param productIds The products on the cart's lines.
+     * @param quantities The quantity of each line.
+     * @param release    true to give reserved stock back instead of reserving it.
+     * @return The IDs of the products without enough stock (empty if the change was made), or
+     *         null if the database could not be updated.
+     */
+    public IntList reserveStock(int cartId, int[] productIds, int[] quantities, boolean release) {
+        IntList shortOfStock = new IntList();
+        String updateSql = "UPDATE products SET quantity = quantity + ?, version = version + 1 WHERE id = ? AND quantity + ? >= 0";
+        String auditSql = "INSERT INTO stock_adjustments (product_id, delta, counted, reason, reference) VALUES (?, ?, NULL, ?, ?)";
+        try (Connection conn = DatabaseConnection.getConnection(DatabaseConnection.INTERACTIVE_TIMEOUT_MS)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement update = conn.prepareStatement(updateSql);
+                 PreparedStatement audit = conn.prepareStatement(auditSql)) {
+                for (int i = 0; i < productIds.length; i++) {
+                    int delta = release ? quantities[i] : -quantities[i];
+                    update.setInt(1, delta);
+                    update.setInt(2, productIds[i]);
+                    update.setInt(3, delta);
+                    update.addBatch();
+                }
+                int[] counts = update.executeBatch();
+                // When releasing, a count of 0 only means the product was deleted meanwhile
+                for (int i = 0; i < counts.length && !release; i++) {
+                    if (counts[i] == 0) shortOfStock.add(productIds[i]);
+                }
+                if (shortOfStock.isEmpty()) {
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] == 0) continue;
+                        audit.setInt(1, productIds[i]);
+                        audit.setInt(2, release ? quantities[i] : -quantities[i]);
+                        audit.setString(3, release ? "RECALL" : "PARK");
+                        audit.setString(4, "Parked cart " + cartId);
+                        audit.addBatch();
+                    }
+                    audit.executeBatch();
+                    conn.commit();
+                } else {
+                    conn.rollback();
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return shortOfStock;
+    }
+
+    /**
+     * Applies a receiving or stock-take worksheet as relative stock changes and records each line
+     * in the stock_adjustments audit table.
+     * <p>
+     * Lines are sent as JDBC batches, a few hundred per transaction. A line is skipped (and
+     * reported) if its product was deleted or the change would make the stock negative; the
+     * rest of its batch is still applied. If the database fails, the batch in progress is
+     * rolled back and it and all later lines are reported as not applied.
+     *
+     * @param worksheet The lines to apply.
+     * @param reference A delivery note number or count name for the audit trail (may be empty).
+     * @return The IDs of the products whose line was not applied.
+     */
+    public IntList applyStockAdjustments(StockWorksheet worksheet, String reference) {
+        IntList notApplied = new IntList();
+        String updateSql = "UPDATE products SET quantity = quantity + ?, version = version + 1 WHERE id = ? AND quantity + ? >= 0";
+        String auditSql = "INSERT INTO stock_adjustments (product_id, delta, counted, reason, reference) VALUES (?, ?, ?, ?, ?)";
+        String reason = worksheet.getMode().name();
+        String ref = (reference != null && !reference.isBlank()) ? reference.trim() : null;
+        boolean stockTake = worksheet.getMode() == StockWorksheet.Mode.STOCK_TAKE;
+        int committed = 0; // Lines before this one are done
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement update = conn.prepareStatement(updateSql);
+                 PreparedStatement audit = conn.prepareStatement(auditSql)) {
+                while (committed < worksheet.size()) {
+                    int end = Math.min(committed + ADJUSTMENT_BATCH_SIZE, worksheet.size());
+
+                    // A stock-take line that matches the system stock only needs its audit row
+                    IntList updatedLines = new IntList(end - committed);
+                    for (int line = committed; line < end; line++) {
+                        int delta = worksheet.getDelta(line);
+                        if (delta == 0) continue;
+                        update.setInt(1, delta);
+                        update.setInt(2, worksheet.getProduct(line).getId());
+                        update.setInt(3, delta);
+                        update.addBatch();
+                        updatedLines.add(line);
+                    }
+                    boolean[] rejected = new boolean[end - committed];
+                    if (!updatedLines.isEmpty()) {
+                        int[] counts = update.executeBatch();
+                        for (int i = 0; i < counts.length; i++) {
+                            if (counts[i] == 0) rejected[updatedLines.get(i) - committed] = true;
+                        }
+                    }
+
+                    for (int line = committed; line < end; line++) {
+                        Product product = worksheet.getProduct(line);
+                        if (rejected[line - committed]) {
+                            notApplied.add(product.getId());
+                            continue;
+                        }
+                        audit.setInt(1, product.getId());
+                        audit.setInt(2, worksheet.getDelta(line));
+                        if (stockTake) {
+                            audit.setInt(3, worksheet.getEntered(line));
+                        } else {
+                            audit.setNull(3, Types.INTEGER);
+                        }
+                        audit.setString(4, reason);
+                        audit.setString(5, ref);
+                        audit.addBatch();
+                    }
+                    audit.executeBatch();
+                    conn.commit();
+                    committed = end;
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            // The batch in progress was rolled back; report it and everything after it
+            for (int line = committed; line < worksheet.size(); line++) {
+                int id = worksheet.getProduct(line).getId();
+                if (!notApplied.contains(id)) notApplied.add(id);
+            }
+        }
+        return notApplied;
+    }
+
+    /**
+     * Reprices every selected product in one transaction with a single set-based UPDATE, bumping
+     * the row version of each product whose price changes.
+     * <p>
+     * The new price is computed by the database with the same arithmetic as PriceRule.apply, so it
+     * matches a preview made from the in-memory catalog. If the number of products that would change
+     * differs from the preview (the catalog was edited in between), nothing is written.
+     *
+     * @param selector      The products to reprice.
+     * @param rule          How to compute each new price.
+     * @param expectedCount The number of price changes in the preview.
+     * @return The number of products repriced, or -1 if nothing was changed because the selection
+     *         no longer matches the preview or the database failed.
+     */
+    public int repriceProducts(ProductSelector selector, PriceRule rule, int expectedCount) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder expression = new StringBuilder();
+        appendPriceExpression(expression, rule, params);
+        List<Object> expressionParams = new ArrayList<>(params);
+
+        StringBuilder sql = new StringBuilder("UPDATE products SET price = ").append(expression)
+                .append(", version = version + 1");
+        appendProductWhere(sql, selector, params);
+        sql.append(" AND price <> ").append(expression);
+        params.addAll(expressionParams);
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                bindParams(pstmt, params);
+                int updated = pstmt.executeUpdate();
+                if (updated != expectedCount) {
+                    conn.rollback();
+                    System.err.println("Repricing rolled back: " + updated + " products matched, the preview had " + expectedCount);
+                    return -1;
+                }
+                conn.commit();
+                return updated;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    /**
+     * Appends the SQL equivalent of PriceRule.apply on the price column.
+     */
+    private static void appendPriceExpression(StringBuilder sql, PriceRule rule, List<Object> params) {
+        String adjusted = (rule.getAdjustment() == PriceRule.Adjustment.PERCENT) ? "ROUND(price * ?, 2)" : "(price + ?)";
+        params.add(rule.getOperand());
+        String rounded;
+        if (rule.getRounding().getStep() != null) {
+            rounded = "ROUND(" + adjusted + " / ?, 0) * ?";
+            params.add(rule.getRounding().getStep());
+            params.add(rule.getRounding().getStep());
+        } else if (rule.getRounding() == PriceRule.Rounding.ENDING_99) {
+            rounded = "CEIL(" + adjusted + ") - 0.01";
+        } else {
+            rounded = adjusted;
+        }
+        sql.append("GREATEST(").append(rounded).append(", ?)");
+        params.add(PriceRule.MIN_PRICE);
+    }
+
+    /**
+     * Appends a WHERE clause for the selector. The clause is always present (possibly "1 = 1"),
+     * so callers can add further conditions with AND.
+     */
+    private static void appendProductWhere(StringBuilder sql, ProductSelector selector, List<Object> params) {
+        List<String> conditions = new ArrayList<>();
+        if (selector.getCategoryId() != null) {
+            conditions.add(IN_CATEGORY_SUBTREE);
+            params.add(selector.getCategoryId());
+        }
+        if (selector.getBrand() != null) {
+            conditions.add("brand = ?");
+            params.add(selector.getBrand());
+        }
+        if (selector.getRefPattern() != null) {
+            conditions.add("ref_number LIKE ?");
+            params.add(selector.getRefLikePattern());
+        }
+        sql.append(" WHERE ").append(conditions.isEmpty() ? "1 = 1" : String.join(" AND ", conditions));
+    }
+
+    /**
+     * Retrieves the sales matching a filter, most recent first.
+     * Used by the SalesReportFrame. Runs on the reporting connection.
+     *
+     * @param filter The criteria to match.
+     * @param limit  The maximum number of sales to return.
      * @return A List of Sale objects, sorted with the most recent first.
      */
-    public List<Sale> getAllSales() {
+    public List<Sale> findSales(SalesFilter filter, int limit) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT s.id, s.sale_date, s.total_price, s.payment_method FROM sales s");
+        appendSalesWhere(sql, filter, params);
+        sql.append(" ORDER BY s.sale_date DESC, s.id DESC LIMIT ?");
+        params.add(limit);
+        return querySales(sql.toString(), params);
+    }
+
+    /**
+     * Retrieves the sales matching a filter recorded at or after the given time, oldest first.
+     * Used by the live tail of the SalesReportFrame; served by the sale_date index.
+     * Runs on the reporting connection.
+     *
+     * @param filter The criteria to match.
+     * @param since  The earliest sale_date to include.
+     * @return A List of Sale objects, sorted with the oldest first.
+     */
+    public List<Sale> getSalesSince(SalesFilter filter, Timestamp since) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT s.id, s.sale_date, s.total_price, s.payment_method FROM sales s");
+        appendSalesWhere(sql, filter.startingAt(since), params);
+        sql.append(" ORDER BY s.sale_date, s.id");
+        return querySales(sql.toString(), params);
+    }
+
+    /**
+     * Counts and totals every sale matching a filter, without transferring the rows.
+     * Runs on the reporting connection.
+     *
+     * @param filter The criteria to match.
+     * @return The totals, or null if the query failed.
+     */
+    public SalesSummary summarizeSales(SalesFilter filter) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*), COALESCE(SUM(s.total_price), 0) FROM sales s");
+        appendSalesWhere(sql, filter, params);
+        try (Connection conn = DatabaseConnection.getReportingConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            bindParams(pstmt, params);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return new SalesSummary(rs.getInt(1), rs.getBigDecimal(2));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Appends the WHERE clause for a filter. Each criterion maps onto an indexed column:
+     * sale_date for ranges, (payment_method, sale_date) for payment filters and
+     * (product_id, sale_id) on sale_items for the containing-product filter. An explicit sale ID
+     * list is read through the primary key.
+     */
+    private static void appendSalesWhere(StringBuilder sql, SalesFilter filter, List<Object> params) {
+        List<String> conditions = new ArrayList<>();
+        if (filter.getFrom() != null) {
+            conditions.add("s.sale_date >= ?");
+            params.add(filter.getFrom());
+        }
+        if (filter.getTo() != null) {
+            conditions.add("s.sale_date < ?");
+            params.add(filter.getTo());
+        }
+        if (filter.getPaymentMethod() != null) {
+            conditions.add("s.payment_method = ?");
+            params.add(filter.getPaymentMethod());
+        }
+        if (filter.getCardType() != null) {
+            conditions.add("s.card_type = ?");
+            params.add(filter.getCardType());
+        }
+        if (filter.getMinTotal() != null) {
+            conditions.add("s.total_price >= ?");
+            params.add(filter.getMinTotal());
+        }
+        if (filter.getProductId() != null) {
+            conditions.add("s.id IN (SELECT si.sale_id FROM sale_items si WHERE si.product_id = ?)");
+            params.add(filter.getProductId());
+        }
+        IntList saleIds = filter.getSaleIds();
+        if (saleIds != null) {
+            if (saleIds.isEmpty()) {
+                conditions.add("1 = 0");
+            } else {
+                conditions.add("s.id IN (" + String.join(", ", Collections.nCopies(saleIds.size(), "?")) + ")");
+                for (int i = 0; i < saleIds.size(); i++) params.add(saleIds.get(i));
+            }
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+    }
+
+    private static void bindParams(PreparedStatement pstmt, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            Object value = params.get(i);
+            if (value instanceof Timestamp) pstmt.setTimestamp(i + 1, (Timestamp) value);
+            else if (value instanceof BigDecimal) pstmt.setBigDecimal(i + 1, (BigDecimal) value);
+            else if (value instanceof Integer) pstmt.setInt(i + 1, (Integer) value);
+            else pstmt.setString(i + 1, (String) value);
+        }
+    }
+
+    private List<Sale> querySales(String sql, List<Object> params) {
         List<Sale> sales = new ArrayList<>();
-        String sql = "SELECT id, sale_date, total_price, payment_method FROM sales ORDER BY sale_date DESC";
-        try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                sales.add(new Sale(
-                        rs.getInt("id"),
-                        rs.getTimestamp("sale_date"),
-                        rs.getBigDecimal("total_price"),
-                        rs.getString("payment_method")
-                ));
+        try (Connection conn = DatabaseConnection.getReportingConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            bindParams(pstmt, params);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    sales.add(new Sale(
+                            rs.getInt("id"),
+                            rs.getTimestamp("sale_date"),
+                            rs.getBigDecimal("total_price"),
+                            rs.getString("payment_method")
+                    ));
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -248,7 +663,7 @@ public class Inventory {
 
     /**
      * Retrieves all line items for a specific sale.
-     * Used by the SalesReportFrame.
+     * Used by the SalesReportFrame. Runs on the reporting connection.
      *
      * @param saleId The ID of the sale to get items for.
      * @return A List of SaleItem objects.
@@ -259,7 +674,7 @@ public class Inventory {
                 "FROM sale_items si " +
                 "LEFT JOIN products p ON si.product_id = p.id " + // LEFT JOIN in case product was deleted
                 "WHERE si.sale_id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getReportingConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, saleId);
             try (ResultSet rs = pstmt.executeQuery()) {
@@ -2,6 +2,8 @@ package app;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.tree.TreePath;
+import javax.swing.tree.TreeSelectionModel;
 import java.awt.*;
 import java.io.File;
 import java.net.URL;
@@ -9,27 +11,40 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.List;
 
 public class InventoryDialog extends JDialog {
 
     private final Inventory inventory;
+    private final SalesIndex salesIndex;
+    private final CatalogCache catalog;
+    private final CatalogSynchronizer catalogSynchronizer;
 
     // UI Components
-    private JList<Category> categoryList;
-    private DefaultListModel<Category> categoryListModel;
+    private JTree categoryTree;
+    private CategoryTreeModel categoryTreeModel;
+    private CategoryTree categories = CategoryTree.EMPTY;
     private JList<Product> productList;
     private DefaultListModel<Product> productListModel;
 
     // Form Components
     private JTextField nameField, priceField, refField, brandField, imagePathField;
     private JSpinner quantitySpinner;
+    private JSpinner reorderLevelSpinner;
     private JComboBox<Category> categoryComboBox;
     private JLabel imagePreviewLabel;
 
-    public InventoryDialog(Frame owner, Inventory inventory) {
+    private static final int MAX_SAVE_ATTEMPTS = 3;
+
+    // Snapshot of the product as it was when loaded into the form (used for version checks)
+    private Product editingProduct;
+
+    public InventoryDialog(Frame owner, Inventory inventory, SalesIndex salesIndex, CatalogCache catalog,
+                           CatalogSynchronizer catalogSynchronizer) {
         super(owner, "Inventory Management", true);
         this.inventory = inventory;
+        this.salesIndex = salesIndex;
+        this.catalog = catalog;
+        this.catalogSynchronizer = catalogSynchronizer;
 
         setSize(1200, 700);
         setLocationRelativeTo(owner);
@@ -47,22 +62,22 @@ public class InventoryDialog extends JDialog {
     private JPanel createSelectionPanel() {
         JPanel panel = new JPanel(new BorderLayout(10, 10));
 
-        categoryListModel = new DefaultListModel<>();
-        categoryList = new JList<>(categoryListModel);
-        categoryList.setBorder(BorderFactory.createTitledBorder("Categories"));
-        categoryList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        categoryTreeModel = new CategoryTreeModel("Categories");
+        categoryTree = new JTree(categoryTreeModel);
+        categoryTree.setBorder(BorderFactory.createTitledBorder("Categories"));
+        categoryTree.setRootVisible(false);
+        categoryTree.setShowsRootHandles(true);
+        categoryTree.getSelectionModel().setSelectionMode(TreeSelectionModel.SINGLE_TREE_SELECTION);
 
         productListModel = new DefaultListModel<>();
         productList = new JList<>(productListModel);
         productList.setCellRenderer(new ProductListCellRenderer());
 
-        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(categoryList), new JScrollPane(productList));
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(categoryTree), new JScrollPane(productList));
         split.setDividerLocation(200);
         panel.add(split, BorderLayout.CENTER);
 
-        categoryList.addListSelectionListener(e -> {
-            if (!e.getValueIsAdjusting()) loadProductsForSelectedCategory();
-        });
+        categoryTree.addTreeSelectionListener(e -> loadProductsForSelectedCategory());
 
         productList.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) populateForm(productList.getSelectedValue());
@@ -84,7 +99,10 @@ public class InventoryDialog extends JDialog {
         brandField = new JTextField(15);
         priceField = new JTextField(10);
         quantitySpinner = new JSpinner(new SpinnerNumberModel(0, 0, 10000, 1));
+        reorderLevelSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 10000, 1));
+        reorderLevelSpinner.setToolTipText("Report the product as low on stock at or below this quantity (0 = never)");
         categoryComboBox = new JComboBox<>();
+        categoryComboBox.setRenderer(new CategoryTreeModel.IndentedRenderer(() -> categories));
         imagePathField = new JTextField(20);
         imagePathField.setEditable(false);
         JButton browseButton = new JButton("Browse...");
@@ -121,6 +139,10 @@ public class InventoryDialog extends JDialog {
         priceQtyPanel.add(new JLabel("Quantity:"));
         priceQtyPanel.add(Box.createHorizontalStrut(5));
         priceQtyPanel.add(quantitySpinner);
+        priceQtyPanel.add(Box.createHorizontalStrut(20));
+        priceQtyPanel.add(new JLabel("Reorder at:"));
+        priceQtyPanel.add(Box.createHorizontalStrut(5));
+        priceQtyPanel.add(reorderLevelSpinner);
 
         gbc.gridy = ++y; gbc.gridx = 0; gbc.weightx = 0.0; gbc.fill = GridBagConstraints.NONE;
         formPanel.add(new JLabel("Price:"), gbc);
@@ -151,12 +173,24 @@ public class InventoryDialog extends JDialog {
         JButton addButton = new JButton("Add Product");
         JButton saveButton = new JButton("Save Changes");
         JButton deleteButton = new JButton("Delete Product");
+        JButton salesButton = new JButton("Sales History");
+        JButton receiveButton = new JButton("Receive Stock");
+        JButton stockTakeButton = new JButton("Stock Take");
+        JButton repriceButton = new JButton("Bulk Reprice");
 
         clearButton.addActionListener(e -> clearForm());
         addButton.addActionListener(e -> handleAddProduct());
         saveButton.addActionListener(e -> handleSaveChanges());
         deleteButton.addActionListener(e -> handleDeleteProduct());
-
+        salesButton.addActionListener(e -> handleShowSales());
+        receiveButton.addActionListener(e -> handleWorksheet(StockWorksheet.Mode.RECEIVING));
+        stockTakeButton.addActionListener(e -> handleWorksheet(StockWorksheet.Mode.STOCK_TAKE));
+        repriceButton.addActionListener(e -> handleBulkReprice());
+
+        panel.add(receiveButton);
+        panel.add(stockTakeButton);
+        panel.add(repriceButton);
+        panel.add(salesButton);
         panel.add(clearButton);
         panel.add(addButton);
         panel.add(saveButton);
@@ -164,20 +198,43 @@ public class InventoryDialog extends JDialog {
         return panel;
     }
 
+    private void handleShowSales() {
+        Product selectedProduct = productList.getSelectedValue();
+        if (selectedProduct == null) {
+            JOptionPane.showMessageDialog(this, "Please select a product to see its sales.", "No Product Selected", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        new ProductSalesDialog(this, inventory, salesIndex, selectedProduct).setVisible(true);
+    }
+
+    private void handleWorksheet(StockWorksheet.Mode mode) {
+        new StockWorksheetDialog(this, inventory, catalog, mode).setVisible(true);
+        // Stock levels have probably changed
+        loadProductsForSelectedCategory();
+        clearForm();
+    }
+
+    private void handleBulkReprice() {
+        new BulkRepriceDialog(this, inventory, catalog, catalogSynchronizer).setVisible(true);
+        // Prices have probably changed
+        loadProductsForSelectedCategory();
+        clearForm();
+    }
+
     private void loadCategories() {
-        categoryListModel.clear();
+        categories = new CategoryTree(inventory.getAllCategories());
+        categoryTreeModel.reload(categoryTree, categories);
         categoryComboBox.removeAllItems();
-        List<Category> categories = inventory.getAllCategories();
-        categories.forEach(cat -> {
-            categoryListModel.addElement(cat);
-            categoryComboBox.addItem(cat);
-        });
+        categories.getAllInTreeOrder().forEach(categoryComboBox::addItem);
     }
 
+    /**
+     * Lists the products of the selected category, including those in its subcategories.
+     */
     private void loadProductsForSelectedCategory() {
         productListModel.clear();
-        Category selected = categoryList.getSelectedValue();
-        if (selected != null) {
+        TreePath path = categoryTree.getSelectionPath();
+        if (path != null && path.getLastPathComponent() instanceof Category selected) {
             inventory.getProductsByCategory(selected).forEach(productListModel::addElement);
         }
     }
@@ -187,11 +244,19 @@ public class InventoryDialog extends JDialog {
             clearForm();
             return;
         }
+        // Re-read the row so the form starts from the latest stock and version
+        Product latest = inventory.getProductById(product.getId());
+        editingProduct = (latest != null) ? latest : product;
+        fillFormFields(editingProduct);
+    }
+
+    private void fillFormFields(Product product) {
         nameField.setText(product.getName());
         refField.setText(product.getRefNumber());
         brandField.setText(product.getBrand());
         priceField.setText(String.format("%.2f", product.getPrice()));
-        quantitySpinner.setValue(inventory.getStockCount(product));
+        quantitySpinner.setValue(product.getQuantity());
+        reorderLevelSpinner.setValue(product.getReorderLevel());
         imagePathField.setText(product.getImagePath());
 
         for (int i = 0; i < categoryComboBox.getItemCount(); i++) {
@@ -205,12 +270,14 @@ public class InventoryDialog extends JDialog {
     }
 
     private void clearForm() {
+        editingProduct = null;
         productList.clearSelection();
         nameField.setText("");
         refField.setText("");
         brandField.setText("");
         priceField.setText("");
         quantitySpinner.setValue(0);
+        reorderLevelSpinner.setValue(0);
         categoryComboBox.setSelectedIndex(-1);
         imagePathField.setText("");
         updateImagePreview((String) null);
@@ -247,9 +314,7 @@ public class InventoryDialog extends JDialog {
         if (filename != null && !filename.isEmpty()) {
             URL url = getClass().getResource("/images/" + filename);
             if (url != null) {
-                ImageIcon icon = new ImageIcon(url);
-                Image scaled = icon.getImage().getScaledInstance(150, 150, Image.SCALE_SMOOTH);
-                imagePreviewLabel.setIcon(new ImageIcon(scaled));
+                imagePreviewLabel.setIcon(ImageLoader.loadScaled(url, 150));
                 imagePreviewLabel.setText(null);
                 return;
             }
@@ -260,9 +325,7 @@ public class InventoryDialog extends JDialog {
 
     private void updateImagePreview(File imageFile) {
         if (imageFile != null && imageFile.exists()) {
-            ImageIcon icon = new ImageIcon(imageFile.getAbsolutePath());
-            Image scaled = icon.getImage().getScaledInstance(150, 150, Image.SCALE_SMOOTH);
-            imagePreviewLabel.setIcon(new ImageIcon(scaled));
+            imagePreviewLabel.setIcon(ImageLoader.loadScaled(imageFile, 150));
             imagePreviewLabel.setText(null);
         } else {
             updateImagePreview((String) null);
@@ -270,6 +333,10 @@ public class InventoryDialog extends JDialog {
     }
 
     private Product createProductFromFields(int existingId) {
+        return createProductFromFields(existingId, 0, 0);
+    }
+
+    private Product createProductFromFields(int existingId, int quantity, int version) {
         try {
             String name = nameField.getText();
             String ref = refField.getText();
@@ -278,12 +345,10 @@ public class InventoryDialog extends JDialog {
             Category cat = (Category) categoryComboBox.getSelectedItem();
             String imgPath = imagePathField.getText();
             int catId = (cat != null) ? cat.getId() : 0;
+            int reorderLevel = (int) reorderLevelSpinner.getValue();
 
-            if (existingId == -1) {
-                return new Product(name, price, ref, brand, imgPath, catId);
-            } else {
-                return new Product(existingId, name, price, ref, brand, imgPath, catId);
-            }
+            // -1 indicates a new product not yet persisted
+            return new Product(existingId, name, price, ref, brand, imgPath, catId, reorderLevel, quantity, version);
         } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(this, "Invalid price format.", "Input Error", JOptionPane.ERROR_MESSAGE);
             return null;
@@ -303,17 +368,78 @@ public class InventoryDialog extends JDialog {
 
     private void handleSaveChanges() {
         Product selectedProduct = productList.getSelectedValue();
-        if (selectedProduct == null) {
+        if (selectedProduct == null || editingProduct == null) {
             JOptionPane.showMessageDialog(this, "Please select a product to update.", "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
-        Product updatedProduct = createProductFromFields(selectedProduct.getId());
-        if (updatedProduct != null) {
-            int quantity = (int) quantitySpinner.getValue();
-            inventory.updateProduct(updatedProduct, quantity);
-            loadProductsForSelectedCategory();
-            JOptionPane.showMessageDialog(this, "Product Updated Successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+        int quantity = (int) quantitySpinner.getValue();
+        Product updatedProduct = createProductFromFields(editingProduct.getId(), quantity, editingProduct.getVersion());
+        if (updatedProduct == null) return;
+
+        // Only the change the user made to the stock is sent, never the absolute value
+        int quantityDelta = quantity - editingProduct.getQuantity();
+        Product base = editingProduct;
+
+        for (int attempt = 0; attempt < MAX_SAVE_ATTEMPTS; attempt++) {
+            if (inventory.updateProduct(updatedProduct, quantityDelta)) {
+                loadProductsForSelectedCategory();
+                JOptionPane.showMessageDialog(this, "Product Updated Successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+
+            Product current = inventory.getProductById(base.getId());
+            if (current == null) {
+                JOptionPane.showMessageDialog(this, "This product was deleted by another user.", "Update Conflict", JOptionPane.WARNING_MESSAGE);
+                loadProductsForSelectedCategory();
+                clearForm();
+                return;
+            }
+            if (current.getQuantity() + quantityDelta < 0) {
+                JOptionPane.showMessageDialog(this,
+                        String.format("Stock is now %d, so it cannot be reduced by %d.", current.getQuantity(), -quantityDelta),
+                        "Update Conflict", JOptionPane.WARNING_MESSAGE);
+                reloadForm(current);
+                return;
+            }
+            // If someone else only moved the stock (e.g. a sale), our delta still applies cleanly.
+            if (!current.hasSameDetails(base) && !confirmOverwrite(updatedProduct, current)) {
+                reloadForm(current);
+                return;
+            }
+            base = current;
+            updatedProduct = createProductFromFields(current.getId(), quantity, current.getVersion());
+            if (updatedProduct == null) return;
         }
+        JOptionPane.showMessageDialog(this, "The product is being changed too frequently. Please try again.", "Update Conflict", JOptionPane.WARNING_MESSAGE);
+    }
+
+    /**
+     * Shows what another user changed since the form was loaded and asks whether to keep the local edits.
+     *
+     * @return true to apply the local edits on top of the latest version, false to discard them.
+     */
+    private boolean confirmOverwrite(Product mine, Product theirs) {
+        String message = String.format("<html>This product was changed by another user since you opened it.<br><br>" +
+                        "<table><tr><th></th><th>Yours</th><th>Current</th></tr>" +
+                        "<tr><td>Name</td><td>%s</td><td>%s</td></tr>" +
+                        "<tr><td>Ref #</td><td>%s</td><td>%s</td></tr>" +
+                        "<tr><td>Brand</td><td>%s</td><td>%s</td></tr>" +
+                        "<tr><td>Price</td><td>%.2f</td><td>%.2f</td></tr>" +
+                        "<tr><td>Stock</td><td>%+d</td><td>%d</td></tr></table></html>",
+                mine.getName(), theirs.getName(),
+                mine.getRefNumber(), theirs.getRefNumber(),
+                mine.getBrand(), theirs.getBrand(),
+                mine.getPrice(), theirs.getPrice(),
+                mine.getQuantity() - editingProduct.getQuantity(), theirs.getQuantity());
+        Object[] options = {"Keep My Changes", "Load Latest"};
+        int choice = JOptionPane.showOptionDialog(this, message, "Update Conflict",
+                JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE, null, options, options[1]);
+        return choice == JOptionPane.YES_OPTION;
+    }
+
+    private void reloadForm(Product current) {
+        editingProduct = current;
+        fillFormFields(current);
     }
 
     private void handleDeleteProduct() {
@@ -0,0 +1,93 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps the products with a reorder level ordered by how far their stock is above it, so the
+ * low-stock list is always ready without querying the database.
+ * <p>
+ * The index listens to the CatalogCache, which receives every change to a product row (checkout
+ * at any terminal, receiving, stock takes and edits) through the catalog change log. Each change
+ * moves one entry in a sorted set; products whose reorder level is 0 are not tracked. Listeners
+ * are only told when the set of low products or their order changes.
+ * <p>
+ * All methods run on the Event Dispatch Thread, where CatalogCache delivers its changes.
+ */
+public class LowStockIndex implements CatalogCache.Listener {
+
+    /**
+     * Notified on the Event Dispatch Thread when the low-stock list has changed.
+     */
+    public interface Listener {
+        void lowStockChanged();
+    }
+
+    private final CatalogCache catalog;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Entries are (stock - reorder level) in the high 32 bits and the product ID in the low 32 bits,
+    // so the set is ordered by margin first; a margin of zero or less means the product is low
+    private final TreeSet<Long> byMargin = new TreeSet<>();
+    private final IntIntMap marginById = new IntIntMap(256);
+
+    public LowStockIndex(CatalogCache catalog) {
+        this.catalog = catalog;
+        // Listen before seeding: CatalogCache drops changes while it has no listeners, so a change
+        // applied in between would otherwise be lost. A change seen twice is harmless.
+        catalog.addListener(this);
+        catalog.getAllProducts().forEach(this::update);
+    }
+
+    public void addListener(Listener listener) { listeners.add(listener); }
+    public void removeListener(Listener listener) { listeners.remove(listener); }
+
+    @Override
+    public void catalogChanged(IntList changedProductIds, boolean categoriesChanged) {
+        boolean lowChanged = false;
+        for (int i = 0; i < changedProductIds.size(); i++) {
+            int id = changedProductIds.get(i);
+            Product p = catalog.getProduct(id);
+            lowChanged |= (p != null) ? update(p) : remove(id);
+        }
+        if (lowChanged) listeners.forEach(Listener::lowStockChanged);
+    }
+
+    /**
+     * @return true if the product was, or now is, low on stock.
+     */
+    private boolean update(Product p) {
+        if (p.getReorderLevel() <= 0) return remove(p.getId());
+        int margin = p.getQuantity() - p.getReorderLevel();
+        int old = marginById.put(p.getId(), margin, Integer.MAX_VALUE);
+        if (old == margin) return false;
+        if (old != Integer.MAX_VALUE) byMargin.remove(key(old, p.getId()));
+        byMargin.add(key(margin, p.getId()));
+        return old <= 0 || margin <= 0;
+    }
+
+    private boolean remove(int productId) {
+        int old = marginById.get(productId, Integer.MAX_VALUE);
+        if (old == Integer.MAX_VALUE) return false;
+        marginById.remove(productId);
+        byMargin.remove(key(old, productId));
+        return old <= 0;
+    }
+
+    private static long key(int margin, int productId) {
+        return ((long) margin << 32) | (productId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return The products at or below their reorder level, largest shortfall first.
+     */
+    public List<Product> getLowStock() {
+        List<Product> low = new ArrayList<>();
+        for (long entry : byMargin.headSet(key(1, 0), false)) {
+            Product p = catalog.getProduct((int) entry);
+            if (p != null) low.add(p);
+        }
+        return low;
+    }
+}
@@ -4,6 +4,8 @@ import javax.swing.SwingUtilities;
 
 public class Main {
     public static void main(String[] args) {
+        EdtWatchdog.install();
+
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
@@ -12,5 +14,8 @@ public class Main {
                 dashboard.setVisible(true);
             }
         });
+
+        // Check and upgrade the schema on the main thread while the UI starts from the local snapshot.
+        new SchemaManager().migrate();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,197 @@
+package app;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Carts set aside ("parked") while their customer fetches a forgotten item, so the lane can
+ * serve the next customer. Any number of carts can be parked; each is recalled in full.
+ * <p>
+ * A parked cart is stored compactly as product IDs and quantities, with the time it was parked,
+ * a short note and its total at that time for the recall list. Products and prices are looked up
+ * again from the catalog on recall. The carts are written to data/parked-carts.bin on every
+ * change (to a temporary file that replaces the old one), so they survive a restart of the till.
+ * <p>
+ * The stock of a parked cart is reserved in the database by PosFrame (see
+ * Inventory.reserveStock); this class only keeps the carts. Adding and removing a cart only
+ * succeed once the file has been written, so PosFrame can reserve stock before a cart is stored
+ * and release it only after the cart is gone for good: a crash in between may leave stock
+ * reserved, but never releases the same stock twice.
+ */
+public class ParkedCarts {
+
+    public static final Path DEFAULT_PATH = Paths.get(System.getProperty("user.dir"), "data", "parked-carts.bin");
+
+    private static final int MAGIC = 0x504F5350; // "POSP"
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * One parked cart. Immutable.
+     */
+    public static class ParkedCart {
+        private final int id;
+        private final long parkedAt;
+        private final String note;
+        private final long totalCents;
+        private final int[] productIds;
+        private final int[] quantities;
+
+        ParkedCart(int id, long parkedAt, String note, long totalCents, int[] productIds, int[] quantities) {
+            this.id = id;
+            this.parkedAt = parkedAt;
+            this.note = note;
+            this.totalCents = totalCents;
+            this.productIds = productIds;
+            this.quantities = quantities;
+        }
+
+        public int getId() { return id; }
+        public long getParkedAt() { return parkedAt; }
+        public String getNote() { return note; }
+        public long getTotalCents() { return totalCents; }
+        public int[] getProductIds() { return productIds.clone(); }
+        public int[] getQuantities() { return quantities.clone(); }
+
+        /** @return The total number of items. */
+        public int getItemCount() {
+            int count = 0;
+            for (int quantity : quantities) count += quantity;
+            return count;
+        }
+    }
+
+    private final Path path;
+    private final List<ParkedCart> carts = new ArrayList<>();
+    private int nextId = 1;
+
+    public ParkedCarts(Path path) {
+        this.path = path;
+        load();
+    }
+
+    /**
+     * @return The parked carts, oldest first.
+     */
+    public synchronized List<ParkedCart> getAll() {
+        return new ArrayList<>(carts);
+    }
+
+    public synchronized int size() { return carts.size(); }
+
+    /**
+     * Copies the lines of a cart into a new parked cart with its own ID. The cart is not stored
+     * until it is added.
+     *
+     * @param note       Something to recognise the customer by (may be empty).
+     * @param totalCents The cart total, shown in the recall list.
+     */
+    public synchronized ParkedCart create(Cart cart, String note, long totalCents) {
+        int[] productIds = new int[cart.size()];
+        int[] quantities = new int[cart.size()];
+        for (int line = 0; line < cart.size(); line++) {
+            productIds[line] = cart.getProduct(line).getId();
+            quantities[line] = cart.getQuantityAt(line);
+        }
+        return new ParkedCart(nextId++, System.currentTimeMillis(), (note != null) ? note.trim() : "",
+                totalCents, productIds, quantities);
+    }
+
+    /**
+     * Stores a parked cart (new, or put back after a failed recall) and saves the store.
+     *
+     * @throws IOException if the store could not be saved; the cart is then not stored.
+     */
+    public synchronized void add(ParkedCart cart) throws IOException {
+        carts.add(cart);
+        carts.sort(Comparator.comparingLong(ParkedCart::getParkedAt));
+        try {
+            save();
+        } catch (IOException e) {
+            carts.remove(cart);
+            throw e;
+        }
+    }
+
+    /**
+     * Removes a cart that is being recalled and saves the store.
+     *
+     * @return true if the cart was still parked.
+     * @throws IOException if the store could not be saved; the cart then stays parked.
+     */
+    public synchronized boolean remove(ParkedCart cart) throws IOException {
+        int index = carts.indexOf(cart);
+        if (index < 0) return false;
+        carts.remove(index);
+        try {
+            save();
+        } catch (IOException e) {
+            carts.add(index, cart);
+            throw e;
+        }
+        return true;
+    }
+
+    // --- Persistence ---
+
+    private void load() {
+        if (!Files.exists(path)) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                System.err.println("Ignoring parked carts file with unknown format: " + path);
+                return;
+            }
+            nextId = in.readInt();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int id = in.readInt();
+                long parkedAt = in.readLong();
+                String note = in.readUTF();
+                long totalCents = in.readLong();
+                int lines = in.readInt();
+                int[] productIds = new int[lines];
+                int[] quantities = new int[lines];
+                for (int line = 0; line < lines; line++) {
+                    productIds[line] = in.readInt();
+                    quantities[line] = in.readInt();
+                }
+                carts.add(new ParkedCart(id, parkedAt, note, totalCents, productIds, quantities));
+            }
+        } catch (IOException e) {
+            // Stock stays reserved for carts that could not be read; a stock take corrects it
+            System.err.println("Could not load parked carts: " + e.getMessage());
+            carts.clear();
+        }
+    }
+
+    private void save() throws IOException {
+        Files.createDirectories(path.getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(nextId);
+            out.writeInt(carts.size());
+            for (ParkedCart cart : carts) {
+                out.writeInt(cart.id);
+                out.writeLong(cart.parkedAt);
+                out.writeUTF(cart.note);
+                out.writeLong(cart.totalCents);
+                out.writeInt(cart.productIds.length);
+                for (int line = 0; line < cart.productIds.length; line++) {
+                    out.writeInt(cart.productIds[line]);
+                    out.writeInt(cart.quantities[line]);
+                }
+            }
+            out.flush();
+            file.getFD().sync(); // On disk before stock is reserved or released
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
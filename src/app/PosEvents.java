@@ -0,0 +1,125 @@
+package app;
+
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Custom Java Flight Recorder events for the till. They appear under "POS" in JDK Mission Control,
+ * next to the GC and thread data. Stack traces are off by default to keep always-on recording cheap;
+ * thresholds and enablement are set in the bundled pos.jfc profile.
+ * <p>
+ * The JFR category annotation is written out in full because app.Category is the product category.
+ */
+public final class PosEvents {
+
+    private PosEvents() {}
+
+    @Name("app.ProductSearch")
+    @Label("Product Search")
+    @jdk.jfr.Category({"POS", "Catalog"})
+    @Description("A search or category filter in the POS product grid")
+    @StackTrace(false)
+    public static final class ProductSearch extends Event {
+        @Label("Term Length")
+        public int termLength;
+
+        @Label("Category")
+        public String category;
+
+        @Label("Hits")
+        public int hits;
+    }
+
+    @Name("app.AddToCart")
+    @Label("Add To Cart")
+    @jdk.jfr.Category({"POS", "Cart"})
+    @StackTrace(false)
+    public static final class AddToCart extends Event {
+        @Label("Product ID")
+        public int productId;
+
+        @Label("Quantity In Cart")
+        public int quantityInCart;
+
+        @Label("Stock")
+        public int stock;
+
+        @Label("Accepted")
+        public boolean accepted;
+    }
+
+    @Name("app.CheckoutPhase")
+    @Label("Checkout Phase")
+    @jdk.jfr.Category({"POS", "Checkout"})
+    @Description("One phase of a checkout: paymentDialog, logSale or stockUpdate")
+    @StackTrace(false)
+    public static final class CheckoutPhase extends Event {
+        @Label("Phase")
+        public String phase;
+
+        @Label("Cart Lines")
+        public int cartLines;
+
+        @Label("Sale ID")
+        public int saleId;
+
+        @Label("Succeeded")
+        public boolean succeeded;
+    }
+
+    @Name("app.JdbcStatement")
+    @Label("JDBC Statement")
+    @jdk.jfr.Category({"POS", "Database"})
+    @Description("A statement executed through DatabaseConnection, including reading its results")
+    @StackTrace(false)
+    public static final class JdbcStatement extends Event {
+        @Label("SQL")
+        public String sql;
+
+        @Label("Parameters")
+        public String parameters;
+
+        @Label("Rows")
+        public long rows;
+    }
+
+    @Name("app.ImageDecode")
+    @Label("Image Decode")
+    @jdk.jfr.Category({"POS", "Images"})
+    @Description("Loading and scaling a product or UI image")
+    @StackTrace(false)
+    public static final class ImageDecode extends Event {
+        @Label("Source")
+        public String source;
+
+        @Label("Width")
+        public int width;
+
+        @Label("Height")
+        public int height;
+
+        @Label("Found")
+        public boolean found;
+    }
+
+    @Name("app.EdtStall")
+    @Label("EDT Stall")
+    @jdk.jfr.Category({"POS", "UI"})
+    @Description("An event that blocked the Event Dispatch Thread for longer than the stall budget")
+    @StackTrace(false)
+    public static final class EdtStall extends Event {
+        @Label("Location")
+        public String location;
+
+        @Label("Event")
+        public String event;
+
+        @Label("Stall")
+        @Timespan(Timespan.MILLISECONDS)
+        public long stallMillis;
+    }
+}
@@ -8,42 +8,82 @@ import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableCellEditor;
 import javax.swing.table.TableCellRenderer;
+import javax.swing.tree.TreePath;
+import javax.swing.tree.TreeSelectionModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EventObject;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
 
 public class PosFrame extends JFrame {
 
     // --- Data Models & State ---
     private final Inventory inventory;
     private final SalesLogger salesLogger;
-    private final Map<Product, Integer> currentCart;
-    private final Map<String, ImageIcon> imageCache = new HashMap<>();
+    private final CatalogCache catalog;
+    private final CatalogCache.Listener catalogListener = this::handleCatalogChanged;
+    private final TopSellers topSellers;
+    private final TopSellers.Listener topSellersListener = this::refreshQuickKeys;
+    private final BoughtTogether boughtTogether;
+    private final ParkedCarts parkedCarts;
+    private IntList quickKeyIds = new IntList(); // Products currently on the quick-key strip
+    private final IntIntMap displayedProductIds = new IntIntMap(); // product ID -> position in the grid
+    private final List<Product> displayedProducts = new ArrayList<>(); // In grid order
+    private final Cart currentCart;
+    private final CartPricing pricing;
+    private final IntObjectMap<ImageIcon> imageCache = new IntObjectMap<>(); // product ID -> scaled cart icon
+    private final Map<String, ImageIcon> cardIconCache = new LinkedHashMap<>(CARD_ICON_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ImageIcon> eldest) {
+            return size() > CARD_ICON_CACHE_SIZE;
+        }
+    }; // image resource path -> scaled grid icon
     private boolean isProgrammaticChange = false;
 
     // --- GUI Components ---
-    private JList<Object> categoryList;
-    private DefaultListModel<Object> categoryListModel;
+    private JTree categoryTree;
+    private CategoryTreeModel categoryTreeModel;
     private JTextField searchField;
     private JPanel productGridPanel;
+    private JPanel quickKeyPanel;
+    private JPanel suggestionPanel;
     private JTable cartTable;
     private DefaultTableModel cartTableModel;
     private JLabel totalLabel;
+    private JButton checkoutButton;
+    private JButton parkButton;
+    private JButton recallButton;
+    private boolean parkingInProgress = false; // The cart is locked while a park or recall runs
 
     private final String ALL_PRODUCTS_CATEGORY = "All Products";
+    private static final int QUICK_KEY_COUNT = 20;
+    private static final int SUGGESTION_COUNT = 4;
+    private static final int CARD_ICON_CACHE_SIZE = 500;
 
-    public PosFrame(Inventory inventory, SalesLogger salesLogger) {
+    public PosFrame(Inventory inventory, SalesLogger salesLogger, CatalogCache catalog, TopSellers topSellers,
+                    BoughtTogether boughtTogether, PromotionEngine promotions, ParkedCarts parkedCarts) {
         this.inventory = inventory;
         this.salesLogger = salesLogger;
-        this.currentCart = new HashMap<>();
+        this.catalog = catalog;
+        this.topSellers = topSellers;
+        this.boughtTogether = boughtTogether;
+        this.parkedCarts = parkedCarts;
+        this.currentCart = new Cart();
+        this.pricing = new CartPricing(promotions, currentCart, catalog);
 
         setTitle("Point of Sale");
         setSize(1400, 800);
@@ -51,6 +91,10 @@ public class PosFrame extends JFrame {
         setLocationRelativeTo(null);
         setLayout(new BorderLayout(10, 10));
 
+        quickKeyPanel = new JPanel(new GridLayout(2, QUICK_KEY_COUNT / 2, 5, 5));
+        quickKeyPanel.setBorder(BorderFactory.createTitledBorder("Quick Keys - Top Sellers"));
+        add(quickKeyPanel, BorderLayout.NORTH);
+
         JSplitPane mainSplit = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, createProductSelectionPanel(), createCartPanel());
         mainSplit.setDividerLocation(600); // Narrower product panel, wider cart
         add(mainSplit, BorderLayout.CENTER);
@@ -63,6 +107,54 @@ public class PosFrame extends JFrame {
 
         loadCategories();
         displayProducts();
+        refreshQuickKeys();
+        catalog.addListener(catalogListener);
+        topSellers.addListener(topSellersListener);
+    }
+
+    @Override
+    public void dispose() {
+        catalog.removeListener(catalogListener);
+        topSellers.removeListener(topSellersListener);
+        super.dispose();
+    }
+
+    /**
+     * Rebuilds the quick-key strip from the current top sellers, skipping products that are
+     * out of stock or no longer in the catalog. Does nothing if the strip would not change.
+     */
+    private void refreshQuickKeys() {
+        IntList ids = new IntList(QUICK_KEY_COUNT);
+        IntList candidates = topSellers.getTop(QUICK_KEY_COUNT * 2);
+        for (int i = 0; i < candidates.size() && ids.size() < QUICK_KEY_COUNT; i++) {
+            Product p = catalog.getProduct(candidates.get(i));
+            if (p != null && p.getQuantity() > 0) ids.add(p.getId());
+        }
+        if (Arrays.equals(ids.toArray(), quickKeyIds.toArray()) && quickKeyPanel.getComponentCount() > 0) return;
+        quickKeyIds = ids;
+
+        quickKeyPanel.removeAll();
+        if (ids.isEmpty()) {
+            quickKeyPanel.add(new JLabel("Best-selling products will appear here as sales are made."));
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            Product p = catalog.getProduct(ids.get(i));
+            JButton button = new JButton("<html><center>" + escapeHtml(p.getName()) + "</center></html>");
+            button.setToolTipText(p.getName() + " - " + String.format(Locale.US, "%.2f", p.getPrice()));
+            button.setMargin(new Insets(2, 4, 2, 4));
+            int productId = p.getId();
+            button.addActionListener(e -> {
+                Product current = catalog.getProduct(productId);
+                if (current != null) handleAddToCart(current);
+            });
+            quickKeyPanel.add(button);
+        }
+        quickKeyPanel.revalidate();
+        quickKeyPanel.repaint();
+    }
+
+    private static String escapeHtml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
     }
 
     private JPanel createProductSelectionPanel() {
@@ -76,18 +168,20 @@ public class PosFrame extends JFrame {
     private JPanel createCategoryPanel() {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBorder(BorderFactory.createTitledBorder("Categories"));
-        categoryListModel = new DefaultListModel<>();
-        categoryList = new JList<>(categoryListModel);
-        categoryList.setFont(new Font("Arial", Font.BOLD, 16));
-        categoryList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        categoryList.addListSelectionListener(e -> {
-            if (e.getValueIsAdjusting() || isProgrammaticChange) return;
+        categoryTreeModel = new CategoryTreeModel(ALL_PRODUCTS_CATEGORY);
+        categoryTree = new JTree(categoryTreeModel);
+        categoryTree.setFont(new Font("Arial", Font.BOLD, 16));
+        categoryTree.setRowHeight(0); // Size rows to the font
+        categoryTree.setShowsRootHandles(true);
+        categoryTree.getSelectionModel().setSelectionMode(TreeSelectionModel.SINGLE_TREE_SELECTION);
+        categoryTree.addTreeSelectionListener(e -> {
+            if (isProgrammaticChange) return;
             isProgrammaticChange = true;
             searchField.setText("");
             isProgrammaticChange = false;
             displayProducts();
         });
-        panel.add(new JScrollPane(categoryList), BorderLayout.CENTER);
+        panel.add(new JScrollPane(categoryTree), BorderLayout.CENTER);
         return panel;
     }
 
@@ -99,7 +193,7 @@ public class PosFrame extends JFrame {
             private void handleSearchChange() {
                 if (isProgrammaticChange) return;
                 isProgrammaticChange = true;
-                if (categoryList.getSelectedIndex() != 0) categoryList.setSelectedIndex(0);
+                if (getSelectedCategory() != null) categoryTree.setSelectionRow(0);
                 isProgrammaticChange = false;
                 displayProducts();
             }
@@ -121,9 +215,9 @@ public class PosFrame extends JFrame {
         JPanel panel = new JPanel(new BorderLayout(10, 10));
         panel.setBorder(BorderFactory.createTitledBorder("Cart"));
 
-        String[] columnNames = {"Image", "Item", "Ref #", "Qty", "Price", "Subtotal", "Remove"};
+        String[] columnNames = {"Image", "Item", "Ref #", "Qty", "Price", "Discount", "Subtotal", "Remove"};
         cartTableModel = new DefaultTableModel(columnNames, 0) {
-            public boolean isCellEditable(int row, int column) { return column == 3 || column == 6; }
+            public boolean isCellEditable(int row, int column) { return column == 3 || column == 7; }
             public Class<?> getColumnClass(int columnIndex) {
                 if (columnIndex == 0) return ImageIcon.class;
                 return Object.class;
@@ -139,24 +233,35 @@ public class PosFrame extends JFrame {
         cartTable.getColumnModel().getColumn(2).setPreferredWidth(80);
         cartTable.getColumnModel().getColumn(3).setPreferredWidth(60);
         cartTable.getColumnModel().getColumn(4).setPreferredWidth(70);
-        cartTable.getColumnModel().getColumn(5).setPreferredWidth(80);
+        cartTable.getColumnModel().getColumn(5).setPreferredWidth(130);
         cartTable.getColumnModel().getColumn(6).setPreferredWidth(80);
+        cartTable.getColumnModel().getColumn(7).setPreferredWidth(80);
 
         cartTable.getColumnModel().getColumn(0).setCellRenderer(new ImageRenderer());
         cartTable.getColumnModel().getColumn(3).setCellEditor(new QuantityEditor());
-        cartTable.getColumnModel().getColumn(6).setCellRenderer(new ButtonRenderer());
-        cartTable.getColumnModel().getColumn(6).setCellEditor(new ButtonEditor());
+        cartTable.getColumnModel().getColumn(7).setCellRenderer(new ButtonRenderer());
+        cartTable.getColumnModel().getColumn(7).setCellEditor(new ButtonEditor());
 
         panel.add(new JScrollPane(cartTable), BorderLayout.CENTER);
 
         JPanel bottomPanel = new JPanel(new BorderLayout());
+        suggestionPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        bottomPanel.add(suggestionPanel, BorderLayout.CENTER);
         JPanel checkoutPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         totalLabel = new JLabel("Total: Rs.0.00");
         totalLabel.setFont(new Font("Arial", Font.BOLD, 20));
-        JButton checkoutButton = new JButton("Checkout");
+        checkoutButton = new JButton("Checkout");
         checkoutButton.setFont(new Font("Arial", Font.BOLD, 16));
         checkoutButton.addActionListener(e -> handleCheckout());
+        parkButton = new JButton("Park");
+        parkButton.setToolTipText("Set this cart aside and serve the next customer");
+        parkButton.addActionListener(e -> handlePark());
+        recallButton = new JButton();
+        recallButton.addActionListener(e -> handleRecall());
+        updateRecallButton();
         checkoutPanel.add(totalLabel);
+        checkoutPanel.add(parkButton);
+        checkoutPanel.add(recallButton);
         checkoutPanel.add(checkoutButton);
         bottomPanel.add(checkoutPanel, BorderLayout.EAST);
 
@@ -165,22 +270,105 @@ public class PosFrame extends JFrame {
     }
 
     private void loadCategories() {
-        categoryListModel.clear();
-        categoryListModel.addElement(ALL_PRODUCTS_CATEGORY);
-        inventory.getAllCategories().forEach(categoryListModel::addElement);
-        categoryList.setSelectedIndex(0);
+        isProgrammaticChange = true;
+        categoryTreeModel.reload(categoryTree, catalog.getCategoryTree());
+        if (categoryTree.isSelectionEmpty()) categoryTree.setSelectionRow(0);
+        isProgrammaticChange = false;
+    }
+
+    /**
+     * @return The selected category (whose subcategories are included), or null for all products.
+     */
+    private Category getSelectedCategory() {
+        TreePath path = categoryTree.getSelectionPath();
+        return (path != null && path.getLastPathComponent() instanceof Category c) ? c : null;
     }
 
     private void displayProducts() {
         productGridPanel.removeAll();
+        displayedProductIds.clear();
+        displayedProducts.clear();
         String searchTerm = searchField.getText();
-        Object selectedCategoryObj = categoryList.getSelectedValue();
-        Category category = (selectedCategoryObj instanceof Category) ? (Category) selectedCategoryObj : null;
-        inventory.searchProducts(searchTerm, category).forEach(p -> productGridPanel.add(createProductCard(p)));
+        Category category = getSelectedCategory();
+
+        PosEvents.ProductSearch searchEvent = new PosEvents.ProductSearch();
+        searchEvent.begin();
+        List<Product> results = catalog.searchProducts(searchTerm, category);
+        searchEvent.end();
+        if (searchEvent.shouldCommit()) {
+            searchEvent.termLength = searchTerm.length();
+            searchEvent.category = (category != null) ? category.getName() : ALL_PRODUCTS_CATEGORY;
+            searchEvent.hits = results.size();
+            searchEvent.commit();
+        }
+
+        results.forEach(p -> {
+            displayedProductIds.put(p.getId(), displayedProducts.size());
+            displayedProducts.add(p);
+            productGridPanel.add(createProductCard(p));
+        });
         productGridPanel.revalidate();
         productGridPanel.repaint();
     }
 
+    /**
+     * Called on the EDT when the background synchronizer has applied changes to the catalog.
+     * Cards whose name, price or image changed are replaced in place and cards of products that
+     * sold out or were deleted are removed; stock changes alone leave the grid untouched. The grid
+     * is only rebuilt if the categories changed or a product not shown now matches the filter.
+     */
+    private void handleCatalogChanged(IntList changedProductIds, boolean categoriesChanged) {
+        if (categoriesChanged) loadCategories();
+        String term = searchField.getText().toLowerCase(Locale.ROOT);
+        Category category = getSelectedCategory();
+        boolean rebuild = categoriesChanged;
+        IntList removedPositions = new IntList();
+        for (int i = 0; i < changedProductIds.size() && !rebuild; i++) {
+            int id = changedProductIds.get(i);
+            Product p = catalog.getProduct(id);
+            boolean visible = p != null && catalog.matches(p, term, category);
+            int position = displayedProductIds.get(id, -1);
+            if (position < 0) {
+                rebuild = visible; // Its place in the sort order is only known to the search
+            } else if (!visible) {
+                removedPositions.add(position);
+            } else if (!looksTheSame(displayedProducts.get(position), p)) {
+                displayedProducts.set(position, p);
+                productGridPanel.remove(position);
+                productGridPanel.add(createProductCard(p), position);
+            }
+        }
+        if (rebuild) {
+            displayProducts();
+        } else {
+            if (!removedPositions.isEmpty()) removeCards(removedPositions);
+            productGridPanel.revalidate();
+            productGridPanel.repaint();
+        }
+        refreshQuickKeys(); // Stock or names of top sellers may have changed
+    }
+
+    /**
+     * @return true if a product card would show the same for both versions of a product.
+     */
+    private static boolean looksTheSame(Product shown, Product current) {
+        return shown.getName().equals(current.getName()) && shown.getPrice() == current.getPrice()
+                && Objects.equals(shown.getImagePath(), current.getImagePath());
+    }
+
+    private void removeCards(IntList positions) {
+        int[] sorted = positions.toArray();
+        Arrays.sort(sorted);
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            productGridPanel.remove(sorted[i]);
+            displayedProducts.remove(sorted[i]);
+        }
+        displayedProductIds.clear();
+        for (int position = 0; position < displayedProducts.size(); position++) {
+            displayedProductIds.put(displayedProducts.get(position).getId(), position);
+        }
+    }
+
     private JPanel createProductCard(Product product) {
         JPanel card = new JPanel(new BorderLayout(5, 5));
         card.setBorder(BorderFactory.createEtchedBorder());
@@ -189,15 +377,15 @@ public class PosFrame extends JFrame {
         String imageFilename = (product.getImagePath() != null && !product.getImagePath().isEmpty()) ? product.getImagePath() : "no_image_specified.png";
         String resourcePath = "/images/" + imageFilename;
 
-        System.out.println("Attempting to load image resource: " + resourcePath);
-
-        URL imageUrl = getClass().getResource(resourcePath);
+        ImageIcon icon = cardIconCache.get(resourcePath);
+        if (icon == null) {
+            icon = ImageLoader.loadScaled(getClass().getResource(resourcePath), 100);
+            if (icon != null) cardIconCache.put(resourcePath, icon);
+        }
 
         JLabel imageLabel = new JLabel();
-        if (imageUrl != null) {
-            ImageIcon icon = new ImageIcon(imageUrl);
-            Image image = icon.getImage().getScaledInstance(100, 100, Image.SCALE_SMOOTH);
-            imageLabel.setIcon(new ImageIcon(image));
+        if (icon != null) {
+            imageLabel.setIcon(icon);
         } else {
             imageLabel.setText("No Image");
             System.err.println("ERROR: Could not find image at path: " + resourcePath);
@@ -212,7 +400,11 @@ public class PosFrame extends JFrame {
 
         card.addMouseListener(new MouseAdapter() {
             Border defaultBorder = card.getBorder(), hoverBorder = BorderFactory.createLineBorder(Color.BLUE, 2);
-            public void mouseClicked(MouseEvent e) { handleAddToCart(product); }
+            public void mouseClicked(MouseEvent e) {
+                // The card is kept across stock changes, so add the latest version of the product
+                Product current = catalog.getProduct(product.getId());
+                handleAddToCart(current != null ? current : product);
+            }
             public void mouseEntered(MouseEvent e) { card.setBorder(hoverBorder); }
             public void mouseExited(MouseEvent e) { card.setBorder(defaultBorder); }
         });
@@ -220,25 +412,43 @@ public class PosFrame extends JFrame {
     }
 
     private void handleAddToCart(Product product) {
+        if (parkingInProgress) return;
+        if (cartTable.isEditing()) cartTable.getCellEditor().stopCellEditing();
+        PosEvents.AddToCart event = new PosEvents.AddToCart();
+        event.begin();
         int stock = inventory.getStockCount(product);
-        int inCart = currentCart.getOrDefault(product, 0);
-        if (inCart + 1 > stock) {
+        int inCart = currentCart.getQuantity(product);
+        boolean accepted = inCart + 1 <= stock;
+        if (accepted) {
+            currentCart.setQuantity(product, inCart + 1);
+            if (inCart == 0) addCartRow(currentCart.size() - 1);
+            cartLineChanged(product);
+            showSuggestions(product);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.productId = product.getId();
+            event.quantityInCart = currentCart.getQuantity(product);
+            event.stock = stock;
+            event.accepted = accepted;
+            event.commit();
+        }
+        if (!accepted) {
             JOptionPane.showMessageDialog(this, "Not enough stock for " + product.getName(), "Stock Error", JOptionPane.ERROR_MESSAGE);
-            return;
         }
-        currentCart.put(product, inCart + 1);
-        updateCartView();
     }
 
     private void handleCheckout() {
         if (currentCart.isEmpty()) { JOptionPane.showMessageDialog(this, "Cart is empty!", "Error", JOptionPane.ERROR_MESSAGE); return; }
 
-        BigDecimal finalTotal = currentCart.entrySet().stream()
-                .map(entry -> BigDecimal.valueOf(entry.getKey().getPrice()).multiply(BigDecimal.valueOf(entry.getValue())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        pricing.reprice(); // Apply time windows that opened or closed while the cart was built
+        updateCartView();
+        BigDecimal finalTotal = currentCart.getTotal().subtract(pricing.getTotalDiscount());
 
         CheckoutDialog dialog = new CheckoutDialog(this, finalTotal.doubleValue());
+        PosEvents.CheckoutPhase paymentPhase = beginCheckoutPhase("paymentDialog");
         dialog.setVisible(true);
+        commitCheckoutPhase(paymentPhase, -1, dialog.isPaymentSuccessful());
 
         if (dialog.isPaymentSuccessful()) {
             String paymentMethod = dialog.getPaymentMethod();
@@ -246,36 +456,322 @@ public class PosFrame extends JFrame {
             BigDecimal changeGiven = dialog.getChangeGiven();
             String cardType = dialog.getCardType();
 
-            salesLogger.logSale(currentCart, finalTotal, paymentMethod, cashTendered, changeGiven, cardType);
-            currentCart.forEach((product, qty) -> inventory.reduceStock(product, qty));
+            PosEvents.CheckoutPhase logPhase = beginCheckoutPhase("logSale");
+            int saleId = salesLogger.logSale(currentCart, pricing, finalTotal, paymentMethod, cashTendered, changeGiven, cardType);
+            commitCheckoutPhase(logPhase, saleId, saleId >= 0);
+            if (saleId < 0) {
+                JOptionPane.showMessageDialog(this, "The sale could not be saved. Please try again.", "Database Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            PosEvents.CheckoutPhase stockPhase = beginCheckoutPhase("stockUpdate");
+            StringBuilder shortStock = new StringBuilder();
+            currentCart.forEach((product, qty) -> {
+                if (!inventory.reduceStock(product, qty)) shortStock.append("\n- ").append(product.getName());
+            });
+            commitCheckoutPhase(stockPhase, saleId, shortStock.length() == 0);
+            if (shortStock.length() > 0) {
+                JOptionPane.showMessageDialog(this, "Stock could not be reduced for (sold by another terminal?):" + shortStock, "Stock Warning", JOptionPane.WARNING_MESSAGE);
+            }
 
             JOptionPane.showMessageDialog(this, "Payment Successful! " + totalLabel.getText(), "Success", JOptionPane.INFORMATION_MESSAGE);
 
             currentCart.clear();
+            pricing.clear();
             updateCartView();
+            showSuggestions(null);
             displayProducts();
         } else {
             System.out.println("Checkout canceled by user.");
         }
     }
 
+    /**
+     * Sets the current cart aside so the lane can serve the next customer. Its stock is reserved
+     * in the database first, so other sales cannot take it while the cart is parked.
+     */
+    private void handlePark() {
+        if (currentCart.isEmpty()) { JOptionPane.showMessageDialog(this, "Cart is empty!", "Error", JOptionPane.ERROR_MESSAGE); return; }
+        String note = JOptionPane.showInputDialog(this, "Note to recognise the customer by (optional):", "Park Cart", JOptionPane.QUESTION_MESSAGE);
+        if (note == null) return; // Cancelled
+        runParking(createParkedCart(note), null);
+    }
+
+    /**
+     * Brings a parked cart back. A cart in progress is parked first, so nothing is lost. Prices and
+     * promotions are those of today, not of when the cart was parked.
+     */
+    private void handleRecall() {
+        if (parkedCarts.size() == 0) { JOptionPane.showMessageDialog(this, "No carts are parked.", "Recall Cart", JOptionPane.INFORMATION_MESSAGE); return; }
+        if (!catalog.isLoaded()) { JOptionPane.showMessageDialog(this, "The catalog is still loading. Please try again in a moment.", "Recall Cart", JOptionPane.INFORMATION_MESSAGE); return; }
+
+        JList<ParkedCarts.ParkedCart> list = new JList<>(parkedCarts.getAll().toArray(new ParkedCarts.ParkedCart[0]));
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setSelectedIndex(0);
+        list.setVisibleRowCount(10);
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> l, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(l, value, index, isSelected, cellHasFocus);
+                ParkedCarts.ParkedCart c = (ParkedCarts.ParkedCart) value;
+                setText(String.format("#%d  %tR  %s%d items  Rs.%.2f", c.getId(), c.getParkedAt(),
+                        c.getNote().isEmpty() ? "" : c.getNote() + "  -  ", c.getItemCount(), c.getTotalCents() / 100.0));
+                return this;
+            }
+        });
+        int choice = JOptionPane.showConfirmDialog(this, new JScrollPane(list), "Recall Cart", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        ParkedCarts.ParkedCart parked = list.getSelectedValue();
+        if (choice != JOptionPane.OK_OPTION || parked == null) return;
+
+        runParking(currentCart.isEmpty() ? null : createParkedCart(""), parked);
+    }
+
+    private ParkedCarts.ParkedCart createParkedCart(String note) {
+        pricing.reprice();
+        long totalCents = currentCart.getTotal().subtract(pricing.getTotalDiscount()).movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+        return parkedCarts.create(currentCart, note, totalCents);
+    }
+
+    /**
+     * What a park and/or recall achieved. Filled in on the worker thread, read on the EDT.
+     */
+    private static class ParkingResult {
+        boolean parked;       // The cart on screen is now parked
+        IntList shortOfStock; // Products that could not be reserved, if that stopped the park
+        boolean recalled;     // The selected cart is no longer parked and its stock was released
+        String error;         // For the cashier, if something failed
+    }
+
+    /**
+     * Parks the cart on screen and/or recalls a parked one. Reserving stock and saving the parked
+     * carts run on a worker thread, so a slow database cannot freeze the lane; the cart is locked
+     * until they are done. A recall only goes ahead if the cart on screen was parked first.
+     *
+     * @param toPark   The cart on screen as a parked cart, or null.
+     * @param toRecall The parked cart to bring back, or null.
+     */
+    private void runParking(ParkedCarts.ParkedCart toPark, ParkedCarts.ParkedCart toRecall) {
+        setParkingInProgress(true);
+        new SwingWorker<ParkingResult, Void>() {
+            @Override
+            protected ParkingResult doInBackground() {
+                ParkingResult result = new ParkingResult();
+                if (toPark != null) park(toPark, result);
+                if (toRecall != null && (toPark == null || result.parked)) recall(toRecall, result);
+                return result;
+            }
+
+            @Override
+            protected void done() {
+                setParkingInProgress(false);
+                updateRecallButton();
+                ParkingResult result;
+                try {
+                    result = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                    return;
+                }
+                if (result.shortOfStock != null) {
+                    StringBuilder names = new StringBuilder();
+                    for (int i = 0; i < result.shortOfStock.size(); i++) {
+                        names.append("\n- ").append(currentCart.findProduct(result.shortOfStock.get(i)).getName());
+                    }
+                    JOptionPane.showMessageDialog(PosFrame.this, "Not enough stock left to park the cart (sold by another terminal?):" + names,
+                            "Stock Warning", JOptionPane.WARNING_MESSAGE);
+                }
+                if (result.parked) {
+                    currentCart.clear();
+                    pricing.clear();
+                }
+                int missing = 0;
+                if (result.recalled) {
+                    int[] productIds = toRecall.getProductIds();
+                    int[] quantities = toRecall.getQuantities();
+                    for (int line = 0; line < productIds.length; line++) {
+                        Product product = catalog.getProduct(productIds[line]);
+                        if (product != null) currentCart.setQuantity(product, quantities[line]); else missing++;
+                    }
+                    pricing.reprice();
+                }
+                if (result.parked || result.recalled) {
+                    updateCartView();
+                    showSuggestions(null);
+                    displayProducts();
+                }
+                if (result.error != null) {
+                    JOptionPane.showMessageDialog(PosFrame.this, result.error, "Park / Recall Failed", JOptionPane.ERROR_MESSAGE);
+                }
+                if (missing > 0) {
+                    JOptionPane.showMessageDialog(PosFrame.this, missing + " product(s) in the parked cart are no longer in the catalog and were left out.",
+                            "Recall Cart", JOptionPane.WARNING_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Runs on the worker thread: reserves the cart's stock, then stores the cart.
+     */
+    private void park(ParkedCarts.ParkedCart parked, ParkingResult result) {
+        int[] productIds = parked.getProductIds();
+        int[] quantities = parked.getQuantities();
+        IntList shortOfStock = inventory.reserveStock(parked.getId(), productIds, quantities, false);
+        if (shortOfStock == null) {
+            result.error = "The stock could not be reserved, so the cart was not parked. Please try again.";
+            return;
+        }
+        if (!shortOfStock.isEmpty()) {
+            result.shortOfStock = shortOfStock;
+            return;
+        }
+        try {
+            parkedCarts.add(parked);
+            result.parked = true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            boolean released = inventory.reserveStock(parked.getId(), productIds, quantities, true) != null;
+            result.error = "The parked cart could not be saved (" + e.getMessage() + "), so it was not parked."
+                    + (released ? "" : "\nIts stock is still reserved; correct it with a stock take.");
+        }
+    }
+
+    /**
+     * Runs on the worker thread: removes the cart from the store for good, then releases its
+     * stock, so the same stock can never be released twice.
+     */
+    private void recall(ParkedCarts.ParkedCart parked, ParkingResult result) {
+        try {
+            if (!parkedCarts.remove(parked)) return;
+        } catch (IOException e) {
+            e.printStackTrace();
+            result.error = "The parked carts could not be saved (" + e.getMessage() + "). The cart is still parked; please try again.";
+            return;
+        }
+        if (inventory.reserveStock(parked.getId(), parked.getProductIds(), parked.getQuantities(), true) == null) {
+            result.error = "The parked cart's stock could not be released. Please try again.";
+            try {
+                parkedCarts.add(parked); // Its stock is still reserved, so it stays parked
+            } catch (IOException e) {
+                e.printStackTrace();
+                result.error = "The parked cart's stock could not be released and the cart could not be parked again.\n"
+                        + "Its stock is still reserved; correct it with a stock take.";
+            }
+            return;
+        }
+        result.recalled = true;
+    }
+
+    private void setParkingInProgress(boolean inProgress) {
+        if (inProgress && cartTable.isEditing()) cartTable.getCellEditor().stopCellEditing();
+        parkingInProgress = inProgress;
+        checkoutButton.setEnabled(!inProgress);
+        parkButton.setEnabled(!inProgress);
+        recallButton.setEnabled(!inProgress);
+        cartTable.setEnabled(!inProgress);
+    }
+
+    private void updateRecallButton() {
+        int count = parkedCarts.size();
+        recallButton.setText(count > 0 ? "Recall (" + count + ")" : "Recall");
+    }
+
+    /**
+     * Shows the products most often bought with the one just added, skipping those already in
+     * the cart or out of stock. Passing null clears the suggestions.
+     */
+    private void showSuggestions(Product added) {
+        suggestionPanel.removeAll();
+        if (added != null) {
+            IntList inCart = new IntList(currentCart.size());
+            currentCart.forEach((p, qty) -> inCart.add(p.getId()));
+            IntList ids = boughtTogether.suggest(added.getId(), inCart, SUGGESTION_COUNT * 2);
+            int shown = 0;
+            for (int i = 0; i < ids.size() && shown < SUGGESTION_COUNT; i++) {
+                Product p = catalog.getProduct(ids.get(i));
+                if (p == null || p.getQuantity() <= 0) continue;
+                if (shown++ == 0) suggestionPanel.add(new JLabel("Often bought with " + added.getName() + ":"));
+                JButton button = new JButton("+ " + p.getName());
+                button.setToolTipText(String.format(Locale.US, "%.2f", p.getPrice()));
+                button.addActionListener(e -> {
+                    Product current = catalog.getProduct(p.getId());
+                    if (current != null) handleAddToCart(current);
+                });
+                suggestionPanel.add(button);
+            }
+        }
+        suggestionPanel.revalidate();
+        suggestionPanel.repaint();
+    }
+
+    private PosEvents.CheckoutPhase beginCheckoutPhase(String phase) {
+        PosEvents.CheckoutPhase event = new PosEvents.CheckoutPhase();
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    private void commitCheckoutPhase(PosEvents.CheckoutPhase event, int saleId, boolean succeeded) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.cartLines = currentCart.size();
+            event.saleId = saleId;
+            event.succeeded = succeeded;
+            event.commit();
+        }
+    }
+
     private void updateCartView() {
         if (cartTable.isEditing()) cartTable.getCellEditor().stopCellEditing();
 
         cartTableModel.setRowCount(0);
-        for (Map.Entry<Product, Integer> entry : currentCart.entrySet()) {
-            Product p = entry.getKey();
-            int qty = entry.getValue();
-            double subtotal = p.getPrice() * qty;
-            cartTableModel.addRow(new Object[]{ p, p.getName(), p.getRefNumber(), qty, String.format("%.2f", p.getPrice()), String.format("%.2f", subtotal), "Remove" });
+        for (int i = 0; i < currentCart.size(); i++) {
+            addCartRow(i);
         }
         recalculateGrandTotal();
     }
 
+    private void addCartRow(int line) {
+        Product p = currentCart.getProduct(line);
+        cartTableModel.addRow(new Object[]{ p, p.getName(), p.getRefNumber(), currentCart.getQuantityAt(line), String.format("%.2f", p.getPrice()), "", "", "Remove" });
+        updateCartRowAmounts(line);
+    }
+
+    /**
+     * Re-prices the promotions affected by a change to one line and updates only the rows whose
+     * discount changed, so large carts stay responsive.
+     */
+    private void cartLineChanged(Product product) {
+        IntList changed = pricing.lineChanged(product);
+        int line = currentCart.indexOf(product.getId());
+        if (line >= 0) {
+            cartTableModel.setValueAt(currentCart.getQuantityAt(line), line, 3);
+            updateCartRowAmounts(line);
+        }
+        for (int i = 0; i < changed.size(); i++) {
+            int other = currentCart.indexOf(changed.get(i));
+            if (other >= 0 && other != line) updateCartRowAmounts(other);
+        }
+        recalculateGrandTotal();
+    }
+
+    private void updateCartRowAmounts(int line) {
+        Product p = currentCart.getProduct(line);
+        BigDecimal discount = pricing.getDiscount(p.getId());
+        BigDecimal subtotal = BigDecimal.valueOf(p.getPrice()).multiply(BigDecimal.valueOf(currentCart.getQuantityAt(line))).subtract(discount);
+        Promotion promotion = pricing.getPromotion(p.getId());
+        String discountText = (promotion != null) ? String.format("-%.2f %s", discount, promotion.getName()) : "";
+        cartTableModel.setValueAt(discountText, line, 5);
+        cartTableModel.setValueAt(String.format("%.2f", subtotal), line, 6);
+    }
+
     private void recalculateGrandTotal() {
-        double total = currentCart.entrySet().stream()
-                .mapToDouble(entry -> entry.getKey().getPrice() * entry.getValue()).sum();
-        totalLabel.setText(String.format("Total: Rs.%.2f", total));
+        BigDecimal discount = pricing.getTotalDiscount();
+        BigDecimal total = currentCart.getTotal().subtract(discount);
+        if (discount.signum() > 0) {
+            totalLabel.setText(String.format("Total: Rs.%.2f (saved Rs.%.2f)", total, discount));
+        } else {
+            totalLabel.setText(String.format("Total: Rs.%.2f", total));
+        }
     }
 
     // --- INNER CLASSES FOR CUSTOM JTABLE ---
@@ -286,15 +782,14 @@ public class PosFrame extends JFrame {
             if (value instanceof Product p) {
                 String imagePath = p.getImagePath();
                 if (imagePath != null && !imagePath.isEmpty()) {
-                    if (imageCache.containsKey(imagePath)) {
-                        label.setIcon(imageCache.get(imagePath));
+                    ImageIcon cached = imageCache.get(p.getId());
+                    if (cached != null) {
+                        label.setIcon(cached);
                     } else {
                         URL url = getClass().getResource("/images/" + imagePath);
                         if (url != null) {
-                            ImageIcon icon = new ImageIcon(url);
-                            Image scaled = icon.getImage().getScaledInstance(50, 50, Image.SCALE_SMOOTH);
-                            ImageIcon scaledIcon = new ImageIcon(scaled);
-                            imageCache.put(imagePath, scaledIcon);
+                            ImageIcon scaledIcon = ImageLoader.loadScaled(url, 50);
+                            imageCache.put(p.getId(), scaledIcon);
                             label.setIcon(scaledIcon);
                         }
                     }
@@ -332,11 +827,8 @@ public class PosFrame extends JFrame {
         private void updateTotalsFromSpinner() {
             if (currentProduct != null) {
                 int newQuantity = (Integer) spinner.getValue();
-                currentCart.put(currentProduct, newQuantity);
-                table.getModel().setValueAt(newQuantity, row, 3);
-                double newSubtotal = currentProduct.getPrice() * newQuantity;
-                table.getModel().setValueAt(String.format("%.2f", newSubtotal), row, 5);
-                recalculateGrandTotal();
+                currentCart.setQuantity(currentProduct, newQuantity);
+                cartLineChanged(currentProduct);
             }
         }
 
@@ -389,6 +881,7 @@ public class PosFrame extends JFrame {
             Product productToRemove = (Product) cartTable.getValueAt(row, 0);
             if (productToRemove != null) {
                 currentCart.remove(productToRemove);
+                pricing.lineChanged(productToRemove);
                 updateCartView();
             }
             fireEditingStopped();
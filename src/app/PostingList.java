@@ -0,0 +1,87 @@
+package app;
+
+import java.util.Arrays;
+
+/**
+ * A sorted set of non-negative ints stored compactly: each value is written as the gap from
+ * the previous one in a variable-length byte encoding (7 bits per byte, high bit = more bytes).
+ * Sale IDs of one product are close together, so most entries take one or two bytes instead of four.
+ * <p>
+ * Appending a value larger than the last one is O(1). Inserting out of order (a sale from another
+ * lane with a lower ID arriving later) re-encodes the list, which is rare and still cheap.
+ */
+public class PostingList {
+
+    private byte[] data = new byte[8];
+    private int length;
+    private int size;
+    private int last = -1;
+
+    /**
+     * Adds a value if it is not already present.
+     *
+     * @return true if the value was added.
+     */
+    public boolean add(int value) {
+        if (value < 0) throw new IllegalArgumentException("Negative value: " + value);
+        if (value > last) {
+            writeVarInt(value - last);
+            return true;
+        }
+        if (value == last) return false;
+        int[] values = toArray();
+        int pos = Arrays.binarySearch(values, value);
+        if (pos >= 0) return false;
+        int insertAt = -pos - 1;
+        int[] merged = new int[values.length + 1];
+        System.arraycopy(values, 0, merged, 0, insertAt);
+        merged[insertAt] = value;
+        System.arraycopy(values, insertAt, merged, insertAt + 1, values.length - insertAt);
+        rebuild(merged);
+        return true;
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    /** Returns the number of bytes used by the encoded values. */
+    public int encodedBytes() { return length; }
+
+    public int[] toArray() {
+        int[] values = new int[size];
+        int pos = 0;
+        int value = -1;
+        for (int i = 0; i < size; i++) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            value += gap;
+            values[i] = value;
+        }
+        return values;
+    }
+
+    private void rebuild(int[] values) {
+        length = 0;
+        size = 0;
+        last = -1;
+        for (int v : values) add(v);
+    }
+
+    /** Appends the gap to the new last value. The first gap is measured from -1 so it is never 0. */
+    private void writeVarInt(int gap) {
+        if (length + 5 > data.length) data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+        last += gap;
+        size++;
+        while ((gap & ~0x7F) != 0) {
+            data[length++] = (byte) ((gap & 0x7F) | 0x80);
+            gap >>>= 7;
+        }
+        data[length++] = (byte) gap;
+    }
+}
@@ -0,0 +1,86 @@
+package app;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * A repricing rule: a percentage or fixed change, followed by optional rounding to a price
+ * point. {@link #apply} computes the result in memory for previews; Inventory.repriceProducts
+ * computes the same value in SQL (DECIMAL arithmetic, halves rounded up), so the preview is
+ * what gets written. A price never goes below 0.01.
+ */
+public class PriceRule {
+
+    public enum Adjustment {
+        PERCENT("Percent (%)"),
+        FIXED("Fixed amount");
+
+        private final String label;
+
+        Adjustment(String label) { this.label = label; }
+
+        @Override
+        public String toString() { return label; }
+    }
+
+    public enum Rounding {
+        NONE("No rounding", null),
+        NEAREST_HALF("Nearest 0.50", new BigDecimal("0.50")),
+        NEAREST_1("Nearest 1", BigDecimal.ONE),
+        NEAREST_5("Nearest 5", new BigDecimal("5")),
+        NEAREST_10("Nearest 10", BigDecimal.TEN),
+        ENDING_99("Up to .99", null);
+
+        private final String label;
+        private final BigDecimal step;
+
+        Rounding(String label, BigDecimal step) {
+            this.label = label;
+            this.step = step;
+        }
+
+        /** @return The rounding step, or null for NONE and ENDING_99. */
+        public BigDecimal getStep() { return step; }
+
+        @Override
+        public String toString() { return label; }
+    }
+
+    public static final BigDecimal MIN_PRICE = new BigDecimal("0.01");
+
+    private final Adjustment adjustment;
+    private final BigDecimal amount;
+    private final Rounding rounding;
+
+    /**
+     * @param amount The percentage (e.g. 7.5 or -10) or the amount to add (may be negative).
+     */
+    public PriceRule(Adjustment adjustment, BigDecimal amount, Rounding rounding) {
+        this.adjustment = adjustment;
+        this.amount = amount;
+        this.rounding = rounding;
+    }
+
+    public Adjustment getAdjustment() { return adjustment; }
+    public Rounding getRounding() { return rounding; }
+
+    /**
+     * @return The value the price is multiplied by (PERCENT) or added to (FIXED).
+     */
+    public BigDecimal getOperand() {
+        return (adjustment == Adjustment.PERCENT) ? BigDecimal.ONE.add(amount.movePointLeft(2)) : amount;
+    }
+
+    public BigDecimal apply(BigDecimal price) {
+        BigDecimal result = (adjustment == Adjustment.PERCENT)
+                ? price.multiply(getOperand()).setScale(2, RoundingMode.HALF_UP)
+                : price.add(amount);
+        if (rounding.getStep() != null) {
+            BigDecimal step = rounding.getStep();
+            result = result.divide(step, 0, RoundingMode.HALF_UP).multiply(step);
+        } else if (rounding == Rounding.ENDING_99) {
+            result = result.setScale(0, RoundingMode.CEILING).subtract(MIN_PRICE);
+        }
+        return result.max(MIN_PRICE).setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -14,11 +14,16 @@ public class Product {
     private final String brand;
     private final String imagePath;
     private final int categoryId; // Foreign key to the categories table
+    private final int reorderLevel; // Stock at or below which the product is reported as low (0 = never)
+    private final int quantity; // Stock level at the time the row was read
+    private final int version;  // Row version used for optimistic concurrency checks
 
     /**
-     * Constructor for creating a Product object from data fetched from the database.
+     * Constructor for creating a Product object from a full database row,
+     * including the stock snapshot and the row version it was read at.
      */
-    public Product(int id, String name, double price, String refNumber, String brand, String imagePath, int categoryId) {
+    public Product(int id, String name, double price, String refNumber, String brand, String imagePath, int categoryId,
+                   int reorderLevel, int quantity, int version) {
         this.id = id;
         this.name = name;
         this.price = price;
@@ -26,6 +31,17 @@ public class Product {
         this.brand = brand;
         this.imagePath = imagePath;
         this.categoryId = categoryId;
+        this.reorderLevel = reorderLevel;
+        this.quantity = quantity;
+        this.version = version;
+    }
+
+    /**
+     * Constructor for creating a Product object from data fetched from the database
+     * when the stock level and row version are not needed.
+     */
+    public Product(int id, String name, double price, String refNumber, String brand, String imagePath, int categoryId) {
+        this(id, name, price, refNumber, brand, imagePath, categoryId, 0, 0, 0);
     }
 
     /**
@@ -33,13 +49,7 @@ public class Product {
      * The ID is typically a sentinel value like -1.
      */
     public Product(String name, double price, String refNumber, String brand, String imagePath, int categoryId) {
-        this.id = -1; // Indicates a new product not yet persisted
-        this.name = name;
-        this.price = price;
-        this.refNumber = refNumber;
-        this.brand = brand;
-        this.imagePath = imagePath;
-        this.categoryId = categoryId;
+        this(-1, name, price, refNumber, brand, imagePath, categoryId); // -1 indicates a new product not yet persisted
     }
 
     // --- Getters for all fields ---
@@ -50,6 +60,24 @@ public class Product {
     public String getBrand() { return brand; }
     public String getImagePath() { return imagePath; }
     public int getCategoryId() { return categoryId; }
+    public int getReorderLevel() { return reorderLevel; }
+    public int getQuantity() { return quantity; }
+    public int getVersion() { return version; }
+
+    /**
+     * Checks whether the descriptive fields (everything except stock and version)
+     * match another snapshot of the same product.
+     */
+    public boolean hasSameDetails(Product other) {
+        return other != null
+                && Objects.equals(name, other.name)
+                && Double.compare(price, other.price) == 0
+                && Objects.equals(refNumber, other.refNumber)
+                && Objects.equals(brand, other.brand)
+                && Objects.equals(imagePath, other.imagePath)
+                && categoryId == other.categoryId
+                && reorderLevel == other.reorderLevel;
+    }
 
     /**
      * Provides a rich HTML string representation for display in Swing components like JList.
@@ -71,10 +99,10 @@ public class Product {
     }
 
     /**
-     * The hash code is based on the unique database ID.
+     * The hash code is based on the unique database ID (computed without boxing).
      */
     @Override
     public int hashCode() {
-        return Objects.hash(id);
+        return Integer.hashCode(id);
     }
 }
\ No newline at end of file
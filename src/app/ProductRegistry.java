@@ -0,0 +1,43 @@
+package app;
+
+/**
+ * An identity map holding one canonical Product instance per product ID.
+ * <p>
+ * Every screen obtains products through the shared Inventory, which routes rows through this
+ * registry. A row whose version matches the registered instance is not materialised again, so
+ * PosFrame, InventoryDialog and the cart all hold the same object for the same product.
+ * Products are immutable; an edit replaces the registered instance atomically with the newer one.
+ */
+public class ProductRegistry {
+
+    private final IntObjectMap<Product> products = new IntObjectMap<>(1024);
+
+    /**
+     * @return The registered instance for the ID, or null if none.
+     */
+    public synchronized Product get(int productId) {
+        return products.get(productId);
+    }
+
+    /**
+     * Returns the canonical instance for the given product. If the registry already holds the
+     * same or a newer version, that instance is returned; otherwise the given product becomes
+     * the canonical instance.
+     */
+    public synchronized Product canonicalize(Product product) {
+        if (product.getId() < 0) return product; // Not yet persisted
+        Product existing = products.get(product.getId());
+        if (existing != null && existing.getVersion() >= product.getVersion()) return existing;
+        products.put(product.getId(), product);
+        return product;
+    }
+
+    /**
+     * Forgets a product, e.g. after it was deleted.
+     */
+    public synchronized void remove(int productId) {
+        products.remove(productId);
+    }
+
+    public synchronized int size() { return products.size(); }
+}
@@ -0,0 +1,112 @@
+package app;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Lists the sales that included one product ("who bought X"), for recalls and price disputes.
+ * The lookup goes through the SalesIndex when it is ready, and through SQL otherwise.
+ */
+public class ProductSalesDialog extends JDialog {
+
+    private static final int MAX_ROWS = 2000;
+    private static final String[] PERIODS = {"Last 30 days", "Last 90 days", "Last 365 days", "All time"};
+    private static final int[] PERIOD_DAYS = {30, 90, 365, 0};
+
+    private final Inventory inventory;
+    private final SalesIndex salesIndex;
+    private final Product product;
+    private final DefaultTableModel salesTableModel;
+    private final JComboBox<String> periodComboBox;
+    private final JLabel summaryLabel;
+
+    public ProductSalesDialog(Window owner, Inventory inventory, SalesIndex salesIndex, Product product) {
+        super(owner, "Sales containing " + product.getName(), ModalityType.APPLICATION_MODAL);
+        this.inventory = inventory;
+        this.salesIndex = salesIndex;
+        this.product = product;
+
+        setSize(600, 450);
+        setLocationRelativeTo(owner);
+        setLayout(new BorderLayout(10, 10));
+
+        JPanel northPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        periodComboBox = new JComboBox<>(PERIODS);
+        periodComboBox.addActionListener(e -> loadSales());
+        northPanel.add(new JLabel("Ref #: " + product.getRefNumber()));
+        northPanel.add(Box.createHorizontalStrut(20));
+        northPanel.add(new JLabel("Period:"));
+        northPanel.add(periodComboBox);
+        add(northPanel, BorderLayout.NORTH);
+
+        salesTableModel = new DefaultTableModel(new String[]{"Sale ID", "Date", "Total Price", "Payment Method"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        add(new JScrollPane(new JTable(salesTableModel)), BorderLayout.CENTER);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        summaryLabel = new JLabel(" ");
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(e -> dispose());
+        southPanel.add(summaryLabel, BorderLayout.CENTER);
+        southPanel.add(closeButton, BorderLayout.EAST);
+        southPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 10, 10));
+        add(southPanel, BorderLayout.SOUTH);
+
+        loadSales();
+    }
+
+    private void loadSales() {
+        int days = PERIOD_DAYS[periodComboBox.getSelectedIndex()];
+        Timestamp from = (days > 0) ? Timestamp.valueOf(LocalDate.now().minusDays(days - 1).atStartOfDay()) : null;
+        SalesFilter filter = new SalesFilter(from, null, null, null, null, product.getId());
+        summaryLabel.setText("Loading...");
+        periodComboBox.setEnabled(false);
+
+        new SwingWorker<List<Sale>, Void>() {
+            private SalesSummary summary;
+
+            @Override
+            protected List<Sale> doInBackground() {
+                SalesFilter query = salesIndex.resolve(filter);
+                summary = inventory.summarizeSales(query);
+                return inventory.findSales(query, MAX_ROWS);
+            }
+
+            @Override
+            protected void done() {
+                periodComboBox.setEnabled(true);
+                try {
+                    showSales(get(), summary);
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+        }.execute();
+    }
+
+    private void showSales(List<Sale> sales, SalesSummary summary) {
+        salesTableModel.setRowCount(0);
+        for (Sale sale : sales) {
+            salesTableModel.addRow(new Object[]{
+                    sale.getId(),
+                    sale.getFormattedDate(),
+                    String.format("%.2f", sale.getTotalPrice()),
+                    sale.getPaymentMethod()
+            });
+        }
+        if (summary == null) {
+            summaryLabel.setText(sales.size() + " sales");
+        } else {
+            summaryLabel.setText(String.format("%d sales   Total: %.2f", summary.getSaleCount(), summary.getTotalRevenue()));
+        }
+    }
+}
@@ -0,0 +1,495 @@
+package app;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A typo-tolerant, ranked search index over product name, brand and ref_number.
+ * <p>
+ * Every field is split into lower-case words (tokens). A sorted token dictionary answers prefix
+ * lookups for as-you-type search, and a BK-tree over the same tokens finds words within a small
+ * edit distance of a mistyped one ("nestel" finds "nestle"). Distances are optimal string
+ * alignment distances, so a swapped pair of letters counts as one edit. Words containing digits
+ * (ref numbers, sizes) are matched exactly or by prefix only: a mistyped code should not find a
+ * different product. Each query word must
+ * match some word of the product; the product's relevance is the average quality of those matches,
+ * weighted by field, plus a bonus for sales popularity.
+ * <p>
+ * The index is maintained incrementally by CatalogCache and is not thread-safe on its own.
+ */
+public class ProductSearchIndex {
+
+    private static final int FIELD_NAME = 0;
+    private static final int FIELD_BRAND = 1;
+    private static final int FIELD_REF = 2;
+    private static final float[] FIELD_WEIGHT = {1.0f, 0.9f, 1.0f};
+
+    private static final float SCORE_EXACT = 1.0f;
+    private static final float SCORE_PREFIX_MIN = 0.7f;
+    private static final float SCORE_PREFIX_MAX = 0.95f;
+    private static final float SCORE_FUZZY_BASE = 0.65f;
+    private static final float SCORE_FUZZY_PER_EDIT = 0.2f;
+    private static final float SCORE_SUBSTRING = 0.4f;
+    private static final float POPULARITY_WEIGHT = 0.25f;
+    private static final int DIRECT_CHECK_LIMIT = 512;
+
+    // Token -> postings, each posting being (slot << 2 | field)
+    private final TreeMap<String, IntList> postings = new TreeMap<>();
+    private final BkTree bkTree = new BkTree();
+    private int deadTokens = 0;
+
+    // Products live in dense slots so a search can score them in plain arrays
+    private final IntIntMap slotByProductId = new IntIntMap(1024);
+    private Product[] products = new Product[1024];
+    private String[] lowerText = new String[1024]; // "name\nref", for the substring fallback
+    private final IntList freeSlots = new IntList();
+    private int slotCount = 0;
+
+    // Scratch space for searches, indexed by slot
+    private float[] totalScore = new float[1024];
+    private int[] matchedTokens = new int[1024];
+    private float[] tokenScore = new float[1024];
+
+    // --- Maintenance ---
+
+    public void add(Product product) {
+        remove(product.getId());
+        int slot;
+        if (!freeSlots.isEmpty()) {
+            slot = freeSlots.removeAt(freeSlots.size() - 1);
+        } else {
+            slot = slotCount++;
+            if (slot == products.length) grow();
+        }
+        products[slot] = product;
+        lowerText[slot] = lower(product.getName()) + "\n" + lower(product.getRefNumber());
+        slotByProductId.put(product.getId(), slot);
+        forEachToken(product, (token, field) -> addPosting(token, slot << 2 | field));
+    }
+
+    public void remove(int productId) {
+        int slot = slotByProductId.get(productId, -1);
+        if (slot < 0) return;
+        forEachToken(products[slot], (token, field) -> removePosting(token, slot << 2 | field));
+        slotByProductId.remove(productId);
+        products[slot] = null;
+        lowerText[slot] = null;
+        freeSlots.add(slot);
+    }
+
+    public void clear() {
+        postings.clear();
+        bkTree.clear();
+        deadTokens = 0;
+        slotByProductId.clear();
+        Arrays.fill(products, null);
+        Arrays.fill(lowerText, null);
+        freeSlots.clear();
+        slotCount = 0;
+    }
+
+    private void addPosting(String token, int posting) {
+        IntList list = postings.get(token);
+        if (list == null) {
+            list = new IntList(2);
+            postings.put(token, list);
+            if (isFuzzyMatchable(token)) bkTree.add(token);
+        } else if (list.isEmpty()) {
+            deadTokens--; // Revived; it is still in the BK-tree
+        }
+        // A product's tokens are added together, so a repeated word is always the last posting
+        if (list.isEmpty() || list.get(list.size() - 1) != posting) list.add(posting);
+    }
+
+    private void removePosting(String token, int posting) {
+        IntList list = postings.get(token);
+        if (list == null) return;
+        int index = list.indexOf(posting);
+        if (index < 0) return;
+        list.removeAt(index);
+        if (list.isEmpty()) {
+            // BK-trees do not support deletion; empty tokens stay until there are too many
+            if (++deadTokens > 1000 && deadTokens > postings.size() / 2) rebuildTree();
+        }
+    }
+
+    private void rebuildTree() {
+        postings.values().removeIf(IntList::isEmpty);
+        bkTree.clear();
+        postings.keySet().forEach(token -> {
+            if (isFuzzyMatchable(token)) bkTree.add(token);
+        });
+        deadTokens = 0;
+    }
+
+    private void grow() {
+        int capacity = products.length * 2;
+        products = Arrays.copyOf(products, capacity);
+        lowerText = Arrays.copyOf(lowerText, capacity);
+        totalScore = new float[capacity];
+        matchedTokens = new int[capacity];
+        tokenScore = new float[capacity];
+    }
+
+    // --- Search ---
+
+    /**
+     * Returns the best matching in-stock products, best first.
+     *
+     * @param query      The text typed by the cashier. Must not be blank.
+     * @param category   Accepts the category IDs to include, or null for all.
+     * @param limit      The maximum number of results.
+     * @param popularity Returns a popularity count for a product ID (e.g. number of sales).
+     */
+    public List<Product> search(String query, IntPredicate category, int limit, IntUnaryOperator popularity) {
+        String lowerQuery = query.toLowerCase(Locale.ROOT).trim();
+        List<String> queryTokens = tokenize(lowerQuery);
+        if (queryTokens.isEmpty()) return new ArrayList<>();
+
+        // Longer words are usually more selective; once few candidates remain, the other words
+        // are checked against those products directly instead of walking their postings
+        queryTokens.sort(Comparator.comparingInt(String::length).reversed());
+        IntList candidates = new IntList();
+        int alive = 0;
+        for (int k = 0; k < queryTokens.size(); k++) {
+            String queryToken = queryTokens.get(k);
+            if (k > 0 && alive <= DIRECT_CHECK_LIMIT) {
+                alive = 0;
+                for (int i = 0; i < candidates.size(); i++) {
+                    int slot = candidates.get(i);
+                    if (matchedTokens[slot] != k) continue;
+                    float score = scoreProduct(products[slot], queryToken);
+                    if (score > 0) {
+                        totalScore[slot] += score;
+                        matchedTokens[slot]++;
+                        alive++;
+                    }
+                }
+                continue;
+            }
+            IntList touched = new IntList();
+            scoreToken(queryToken, touched);
+            alive = 0;
+            for (int i = 0; i < touched.size(); i++) {
+                int slot = touched.get(i);
+                if (matchedTokens[slot] == 0) candidates.add(slot);
+                if (matchedTokens[slot] == k) {
+                    totalScore[slot] += tokenScore[slot];
+                    matchedTokens[slot]++;
+                    alive++;
+                }
+                tokenScore[slot] = 0;
+            }
+        }
+
+        // Keep the best `limit` products in a min-heap
+        PriorityQueue<ScoredProduct> best = new PriorityQueue<>(limit + 1);
+        int tokenCount = queryTokens.size();
+        for (int i = 0; i < candidates.size(); i++) {
+            int slot = candidates.get(i);
+            Product p = products[slot];
+            if (matchedTokens[slot] == tokenCount && isVisible(p, category)) {
+                offer(best, p, totalScore[slot] / tokenCount, popularity, limit);
+            }
+            totalScore[slot] = 0;
+            matchedTokens[slot] = 0;
+        }
+
+        // Substring fallback for partial codes and mid-word fragments that the tokens miss
+        if (best.size() < limit && lowerQuery.length() >= 3) {
+            for (int slot = 0; slot < slotCount; slot++) {
+                Product p = products[slot];
+                if (p != null && lowerText[slot].contains(lowerQuery) && isVisible(p, category) && !containsProduct(best, p)) {
+                    offer(best, p, SCORE_SUBSTRING, popularity, limit);
+                }
+            }
+        }
+
+        List<ScoredProduct> sorted = new ArrayList<>(best);
+        sorted.sort(Collections.reverseOrder());
+        List<Product> result = new ArrayList<>(sorted.size());
+        sorted.forEach(s -> result.add(s.product));
+        return result;
+    }
+
+    /**
+     * Records in tokenScore the best score of one query word for every product slot it matches.
+     */
+    private void scoreToken(String queryToken, IntList touched) {
+        // Exact and prefix matches
+        String upper = queryToken + Character.MAX_VALUE;
+        for (Map.Entry<String, IntList> e : postings.subMap(queryToken, true, upper, false).entrySet()) {
+            applyPostings(e.getValue(), prefixScore(queryToken, e.getKey()), touched);
+        }
+        // Typos
+        int maxDistance = isFuzzyMatchable(queryToken) ? maxEdits(queryToken.length()) : 0;
+        if (maxDistance > 0) {
+            bkTree.search(queryToken, maxDistance, (token, distance) -> {
+                if (distance == 0) return; // Already scored as an exact match
+                IntList list = postings.get(token);
+                if (list != null) applyPostings(list, fuzzyScore(distance), touched);
+            });
+        }
+    }
+
+    private static float prefixScore(String queryToken, String token) {
+        return token.length() == queryToken.length()
+                ? SCORE_EXACT
+                : SCORE_PREFIX_MIN + (SCORE_PREFIX_MAX - SCORE_PREFIX_MIN) * queryToken.length() / token.length();
+    }
+
+    private static float fuzzyScore(int distance) {
+        return SCORE_FUZZY_BASE - SCORE_FUZZY_PER_EDIT * (distance - 1);
+    }
+
+    /**
+     * Scores one query word against a single product's words, the same way the index would.
+     *
+     * @return The best weighted score, or 0 if no word of the product matches.
+     */
+    private static float scoreProduct(Product p, String queryToken) {
+        int maxDistance = isFuzzyMatchable(queryToken) ? maxEdits(queryToken.length()) : 0;
+        float[] best = new float[1];
+        forEachToken(p, (token, field) -> {
+            float score = 0;
+            if (token.startsWith(queryToken)) {
+                score = prefixScore(queryToken, token);
+            } else if (maxDistance > 0 && isFuzzyMatchable(token)) {
+                int d = distance(queryToken, token, maxDistance);
+                if (d <= maxDistance) score = fuzzyScore(d);
+            }
+            best[0] = Math.max(best[0], score * FIELD_WEIGHT[field]);
+        });
+        return best[0];
+    }
+
+    private void applyPostings(IntList list, float score, IntList touched) {
+        for (int i = 0; i < list.size(); i++) {
+            int posting = list.get(i);
+            int slot = posting >>> 2;
+            float weighted = score * FIELD_WEIGHT[posting & 3];
+            if (tokenScore[slot] == 0) touched.add(slot);
+            if (weighted > tokenScore[slot]) tokenScore[slot] = weighted;
+        }
+    }
+
+    private static void offer(PriorityQueue<ScoredProduct> best, Product p, float relevance, IntUnaryOperator popularity, int limit) {
+        int count = Math.max(0, popularity.applyAsInt(p.getId()));
+        float popularityScore = (float) (Math.log1p(count) / (Math.log1p(count) + 3)); // 0..1, saturating
+        float score = relevance + POPULARITY_WEIGHT * popularityScore;
+        if (best.size() >= limit && score < best.peek().score) return; // Cheap reject once the heap is full
+        best.add(new ScoredProduct(p, score));
+        if (best.size() > limit) best.poll();
+    }
+
+    private static boolean containsProduct(PriorityQueue<ScoredProduct> best, Product p) {
+        for (ScoredProduct s : best) {
+            if (s.product == p) return true;
+        }
+        return false;
+    }
+
+    private static boolean isVisible(Product p, IntPredicate category) {
+        return p.getQuantity() > 0 && (category == null || category.test(p.getCategoryId()));
+    }
+
+    private static final class ScoredProduct implements Comparable<ScoredProduct> {
+        final Product product;
+        final float score;
+
+        ScoredProduct(Product product, float score) {
+            this.product = product;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(ScoredProduct o) {
+            int c = Float.compare(score, o.score);
+            if (c != 0) return c;
+            return String.CASE_INSENSITIVE_ORDER.compare(o.product.getName(), product.getName()); // A before Z
+        }
+    }
+
+    // --- Matching a single product (no index needed) ---
+
+    /**
+     * Checks whether a product would be found by a search for the given query, ignoring stock
+     * and category. Used to decide whether a changed product affects the current results.
+     */
+    public static boolean matchesQuery(Product p, String lowerQuery) {
+        if (containsIgnoreCase(p.getName(), lowerQuery) || containsIgnoreCase(p.getRefNumber(), lowerQuery)) return true;
+        for (String queryToken : tokenize(lowerQuery)) {
+            if (scoreProduct(p, queryToken) == 0) return false;
+        }
+        return true;
+    }
+
+    // --- Tokens and distances ---
+
+    private interface TokenConsumer {
+        void accept(String token, int field);
+    }
+
+    private static void forEachToken(Product p, TokenConsumer consumer) {
+        for (String token : tokenize(lower(p.getName()))) consumer.accept(token, FIELD_NAME);
+        for (String token : tokenize(lower(p.getBrand()))) consumer.accept(token, FIELD_BRAND);
+        String ref = lower(p.getRefNumber());
+        List<String> refTokens = tokenize(ref);
+        for (String token : refTokens) consumer.accept(token, FIELD_REF);
+        if (refTokens.size() > 1) {
+            consumer.accept(String.join("", refTokens), FIELD_REF); // "abc-123" is also found as "abc123"
+        }
+    }
+
+    private static String lower(String s) {
+        return (s == null) ? "" : s.toLowerCase(Locale.ROOT);
+    }
+
+    static List<String> tokenize(String lowerText) {
+        List<String> tokens = new ArrayList<>(4);
+        int start = -1;
+        for (int i = 0; i <= lowerText.length(); i++) {
+            boolean wordChar = i < lowerText.length() && Character.isLetterOrDigit(lowerText.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(lowerText.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean containsIgnoreCase(String text, String lowerQuery) {
+        return text != null && text.toLowerCase(Locale.ROOT).contains(lowerQuery);
+    }
+
+    private static boolean isFuzzyMatchable(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            if (Character.isDigit(token.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /** Short words must match exactly; longer ones may contain one or two typos. */
+    static int maxEdits(int length) {
+        if (length <= 3) return 0;
+        if (length <= 7) return 1;
+        return 2;
+    }
+
+    /**
+     * Optimal string alignment distance (Levenshtein plus adjacent transpositions), giving up
+     * early once it must exceed {@code max}. Returns {@code max + 1} in that case.
+     */
+    static int distance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > max) return max + 1;
+        int[] prevPrev = new int[m + 1];
+        int[] prev = new int[m + 1];
+        int[] curr = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j;
+        for (int i = 1; i <= n; i++) {
+            curr[0] = i;
+            int rowMin = curr[0];
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                char cb = b.charAt(j - 1);
+                int cost = (ca == cb) ? 0 : 1;
+                int d = Math.min(Math.min(prev[j] + 1, curr[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && ca == b.charAt(j - 2) && a.charAt(i - 2) == cb) {
+                    d = Math.min(d, prevPrev[j - 2] + 1);
+                }
+                curr[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > max) return max + 1;
+            int[] t = prevPrev;
+            prevPrev = prev;
+            prev = curr;
+            curr = t;
+        }
+        return Math.min(prev[m], max + 1);
+    }
+
+    /**
+     * A BK-tree: each child edge is labelled with the distance between child and parent, so by
+     * the triangle inequality a search only descends into edges within {@code max} of the
+     * query's distance to the parent.
+     */
+    private static final class BkTree {
+        private interface Visitor {
+            void visit(String term, int distance);
+        }
+
+        private static final class Node {
+            final String term;
+            int[] distances = new int[2];
+            Node[] children = new Node[2];
+            int childCount;
+
+            Node(String term) {
+                this.term = term;
+            }
+
+            Node child(int distance) {
+                for (int i = 0; i < childCount; i++) {
+                    if (distances[i] == distance) return children[i];
+                }
+                return null;
+            }
+
+            void addChild(int distance, Node node) {
+                if (childCount == children.length) {
+                    distances = Arrays.copyOf(distances, childCount * 2);
+                    children = Arrays.copyOf(children, childCount * 2);
+                }
+                distances[childCount] = distance;
+                children[childCount++] = node;
+            }
+        }
+
+        // Insertion needs exact distances, which can be as large as the longest token
+        private static final int UNBOUNDED = Integer.MAX_VALUE - 1;
+
+        private Node root;
+
+        void clear() {
+            root = null;
+        }
+
+        void add(String term) {
+            if (root == null) {
+                root = new Node(term);
+                return;
+            }
+            Node node = root;
+            while (true) {
+                int d = distance(term, node.term, UNBOUNDED);
+                if (d == 0) return;
+                Node child = node.child(d);
+                if (child == null) {
+                    node.addChild(d, new Node(term));
+                    return;
+                }
+                node = child;
+            }
+        }
+
+        void search(String query, int max, Visitor visitor) {
+            if (root == null) return;
+            ArrayDeque<Node> stack = new ArrayDeque<>();
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                Node node = stack.pop();
+                int d = distance(query, node.term, UNBOUNDED);
+                if (d <= max) visitor.visit(node.term, d);
+                for (int i = 0; i < node.childCount; i++) {
+                    if (Math.abs(node.distances[i] - d) <= max) stack.push(node.children[i]);
+                }
+            }
+        }
+    }
+}
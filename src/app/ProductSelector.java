@@ -0,0 +1,77 @@
+package app;
+
+import java.util.regex.Pattern;
+
+/**
+ * Selects products for bulk operations such as repricing. Every criterion is optional; null means
+ * "any", so a selector with no criteria selects the whole catalog. The same criteria are checked in
+ * memory (for previews) and turned into a WHERE clause by Inventory.
+ */
+public class ProductSelector {
+
+    private final Integer categoryId;
+    private final String brand;
+    private final String refPattern;
+    private final Pattern refRegex;
+
+    /**
+     * @param categoryId Only products in this category or its subcategories.
+     * @param brand      Only products of this brand (case-insensitive).
+     * @param refPattern Only ref numbers matching this pattern, where * is any run of characters
+     *                   and ? is any single character (case-insensitive), e.g. "COKE-*".
+     */
+    public ProductSelector(Integer categoryId, String brand, String refPattern) {
+        this.categoryId = categoryId;
+        this.brand = brand;
+        this.refPattern = refPattern;
+        this.refRegex = (refPattern != null) ? Pattern.compile(globToRegex(refPattern), Pattern.CASE_INSENSITIVE) : null;
+    }
+
+    public Integer getCategoryId() { return categoryId; }
+    public String getBrand() { return brand; }
+    public String getRefPattern() { return refPattern; }
+
+    /**
+     * @param categories The category hierarchy, for the subtree of the selected category.
+     */
+    public boolean matches(Product product, CategoryTree categories) {
+        if (categoryId != null && !categories.contains(categoryId, product.getCategoryId())) return false;
+        if (brand != null && (product.getBrand() == null || !product.getBrand().equalsIgnoreCase(brand))) return false;
+        return refRegex == null || (product.getRefNumber() != null && refRegex.matcher(product.getRefNumber()).matches());
+    }
+
+    /**
+     * @return The ref pattern as a LIKE pattern, with LIKE's own wildcards escaped.
+     */
+    public String getRefLikePattern() {
+        StringBuilder like = new StringBuilder();
+        for (char c : refPattern.toCharArray()) {
+            switch (c) {
+                case '*': like.append('%'); break;
+                case '?': like.append('_'); break;
+                case '%': case '_': case '\\': like.append('\\').append(c); break;
+                default: like.append(c);
+            }
+        }
+        return like.toString();
+    }
+
+    private static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : glob.toCharArray()) {
+            if (c == '*') regex.append(".*");
+            else if (c == '?') regex.append('.');
+            else regex.append(Pattern.quote(String.valueOf(c)));
+        }
+        return regex.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        if (categoryId != null) text.append("category ").append(categoryId);
+        if (brand != null) text.append(text.length() > 0 ? ", " : "").append("brand ").append(brand);
+        if (refPattern != null) text.append(text.length() > 0 ? ", " : "").append("ref ").append(refPattern);
+        return (text.length() > 0) ? text.toString() : "all products";
+    }
+}
@@ -0,0 +1,94 @@
+package app;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * A discount rule read from the promotions table. Rules are immutable; PromotionEngine reloads
+ * them as a whole when they change.
+ * <ul>
+ *   <li>PERCENT_OFF: a percentage off every unit of the listed products and/or a category.</li>
+ *   <li>BUY_X_GET_Y: for every buyQuantity + freeQuantity units of one product, freeQuantity are free.</li>
+ *   <li>BUNDLE: the listed products, in the listed quantities, together cost bundlePrice.</li>
+ * </ul>
+ * Any rule can be limited to a date range and/or a daily time window (e.g. 17:00-19:00).
+ */
+public class Promotion {
+
+    public enum Type { PERCENT_OFF, BUY_X_GET_Y, BUNDLE }
+
+    private final int id;
+    private final String name;
+    private final Type type;
+    private final int categoryId;    // 0 if the rule is not tied to a category
+    private final int[] productIds;
+    private final int[] quantities;  // Units of each product per bundle (1 for other types)
+    private final int buyQuantity;
+    private final int freeQuantity;
+    private final double percentOff;
+    private final long bundlePriceCents;
+    private final LocalDateTime validFrom; // Inclusive, or null
+    private final LocalDateTime validTo;   // Exclusive, or null
+    private final LocalTime dailyStart;    // Both null if the rule applies all day
+    private final LocalTime dailyEnd;
+
+    public Promotion(int id, String name, Type type, int categoryId, int[] productIds, int[] quantities,
+                     int buyQuantity, int freeQuantity, double percentOff, long bundlePriceCents,
+                     LocalDateTime validFrom, LocalDateTime validTo, LocalTime dailyStart, LocalTime dailyEnd) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
+        this.categoryId = categoryId;
+        this.productIds = productIds;
+        this.quantities = quantities;
+        this.buyQuantity = buyQuantity;
+        this.freeQuantity = freeQuantity;
+        this.percentOff = percentOff;
+        this.bundlePriceCents = bundlePriceCents;
+        this.validFrom = validFrom;
+        this.validTo = validTo;
+        this.dailyStart = dailyStart;
+        this.dailyEnd = dailyEnd;
+    }
+
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public Type getType() { return type; }
+    public int getCategoryId() { return categoryId; }
+    public int[] getProductIds() { return productIds; }
+    public int[] getQuantities() { return quantities; }
+    public long getBundlePriceCents() { return bundlePriceCents; }
+
+    /**
+     * Checks the date range and the daily time window. A daily window whose end is before its
+     * start runs past midnight.
+     */
+    public boolean isActiveAt(LocalDateTime now) {
+        if (validFrom != null && now.isBefore(validFrom)) return false;
+        if (validTo != null && !now.isBefore(validTo)) return false;
+        if (dailyStart == null || dailyEnd == null) return true;
+        LocalTime time = now.toLocalTime();
+        if (!dailyStart.isAfter(dailyEnd)) {
+            return !time.isBefore(dailyStart) && time.isBefore(dailyEnd);
+        }
+        return !time.isBefore(dailyStart) || time.isBefore(dailyEnd);
+    }
+
+    /**
+     * Returns the discount on one cart line for the rule types that apply line by line
+     * (PERCENT_OFF and BUY_X_GET_Y), in cents.
+     */
+    public long lineDiscountCents(long unitPriceCents, int quantity) {
+        switch (type) {
+            case PERCENT_OFF:
+                return Math.round(unitPriceCents * quantity * percentOff / 100.0);
+            case BUY_X_GET_Y:
+                return (long) (quantity / (buyQuantity + freeQuantity)) * freeQuantity * unitPriceCents;
+            default:
+                return 0;
+        }
+    }
+
+    @Override
+    public String toString() { return name; }
+}
@@ -0,0 +1,200 @@
+package app;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the promotion rules and indexes them by product and by category, so that pricing a
+ * cart line only looks at the handful of rules that can apply to it (see CartPricing).
+ * <p>
+ * The rules are reloaded in the background every few minutes and published as an immutable
+ * {@link Rules} snapshot; carts being priced keep the snapshot they started with until they
+ * are re-priced. Rules whose date range has ended are not loaded; date and daily time windows
+ * are otherwise checked when a line is priced.
+ */
+public class PromotionEngine {
+
+    private static final long RELOAD_MINUTES = Long.getLong("pos.promotions.reloadMinutes", 5);
+    private static final int[] NONE = new int[0];
+
+    /**
+     * An immutable set of promotions with their product and category indexes. Promotions are
+     * referred to by their position in the set.
+     */
+    public static final class Rules {
+        static final Rules EMPTY = new Rules(List.of());
+
+        private final Promotion[] promotions;
+        private final IntObjectMap<int[]> byProduct = new IntObjectMap<>();
+        private final IntObjectMap<int[]> byCategory = new IntObjectMap<>();
+
+        Rules(List<Promotion> promotions) {
+            this.promotions = promotions.toArray(new Promotion[0]);
+            for (int i = 0; i < this.promotions.length; i++) {
+                Promotion promo = this.promotions[i];
+                for (int productId : promo.getProductIds()) append(byProduct, productId, i);
+                if (promo.getCategoryId() > 0) append(byCategory, promo.getCategoryId(), i);
+            }
+        }
+
+        private static void append(IntObjectMap<int[]> index, int key, int promotion) {
+            int[] existing = index.get(key);
+            if (existing == null) {
+                index.put(key, new int[]{promotion});
+            } else {
+                int[] grown = Arrays.copyOf(existing, existing.length + 1);
+                grown[existing.length] = promotion;
+                index.put(key, grown);
+            }
+        }
+
+        public Promotion get(int index) { return promotions[index]; }
+        public int size() { return promotions.length; }
+
+        /** @return The positions of the promotions that list the product. */
+        public int[] forProduct(int productId) {
+            int[] found = byProduct.get(productId);
+            return (found != null) ? found : NONE;
+        }
+
+        /** @return The positions of the promotions that cover the category. */
+        public int[] forCategory(int categoryId) {
+            int[] found = byCategory.get(categoryId);
+            return (found != null) ? found : NONE;
+        }
+    }
+
+    private volatile Rules rules = Rules.EMPTY;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @return The current rule set. Never null; empty until the first load has finished.
+     */
+    public Rules getRules() {
+        return rules;
+    }
+
+    /**
+     * Loads the rules in the background now and then every few minutes.
+     */
+    public synchronized void start() {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "promotions");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::reloadSafely, 0, RELOAD_MINUTES, TimeUnit.MINUTES);
+    }
+
+    private void reloadSafely() {
+        QueryMonitor.Action action = QueryMonitor.action("promotion reload");
+        try {
+            reload();
+        } catch (SQLException e) {
+            // Keep pricing with the rules we have; the next reload tries again
+            System.err.println("Could not load promotions: " + e.getMessage());
+        } finally {
+            action.close();
+        }
+    }
+
+    /**
+     * Reads all current promotions and publishes them as a new rule set.
+     */
+    public void reload() throws SQLException {
+        String promotionsSql = "SELECT id, name, type, category_id, buy_quantity, free_quantity, percent_off, " +
+                "bundle_price, valid_from, valid_to, daily_start, daily_end FROM promotions " +
+                "WHERE active = 1 AND (valid_to IS NULL OR valid_to > NOW()) ORDER BY id";
+        String productsSql = "SELECT pp.promotion_id, pp.product_id, pp.quantity FROM promotion_products pp " +
+                "JOIN promotions p ON p.id = pp.promotion_id " +
+                "WHERE p.active = 1 AND (p.valid_to IS NULL OR p.valid_to > NOW())";
+
+        // From the primary: the rules decide what the customer is charged, so they must not lag
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            IntObjectMap<IntList> productsByPromotion = new IntObjectMap<>();
+            IntObjectMap<IntList> quantitiesByPromotion = new IntObjectMap<>();
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(productsSql)) {
+                while (rs.next()) {
+                    int promotionId = rs.getInt(1);
+                    IntList products = productsByPromotion.get(promotionId);
+                    if (products == null) {
+                        products = new IntList(4);
+                        productsByPromotion.put(promotionId, products);
+                        quantitiesByPromotion.put(promotionId, new IntList(4));
+                    }
+                    products.add(rs.getInt(2));
+                    quantitiesByPromotion.get(promotionId).add(Math.max(1, rs.getInt(3)));
+                }
+            }
+
+            List<Promotion> loaded = new ArrayList<>();
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(promotionsSql)) {
+                while (rs.next()) {
+                    Promotion promo = mapPromotion(rs, productsByPromotion, quantitiesByPromotion);
+                    if (promo != null) loaded.add(promo);
+                }
+            }
+            rules = new Rules(loaded);
+        }
+    }
+
+    /**
+     * Builds a Promotion from a row, or returns null (with a message) if the row is not a usable rule.
+     */
+    private static Promotion mapPromotion(ResultSet rs, IntObjectMap<IntList> productsByPromotion,
+                                          IntObjectMap<IntList> quantitiesByPromotion) throws SQLException {
+        int id = rs.getInt("id");
+        String name = rs.getString("name");
+        Promotion.Type type;
+        try {
+            type = Promotion.Type.valueOf(rs.getString("type"));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            System.err.println("Ignoring promotion " + id + " (" + name + "): unknown type " + rs.getString("type"));
+            return null;
+        }
+        IntList products = productsByPromotion.get(id);
+        IntList quantities = quantitiesByPromotion.get(id);
+        int[] productIds = (products != null) ? products.toArray() : NONE;
+        int[] productQuantities = (quantities != null) ? quantities.toArray() : NONE;
+        int categoryId = rs.getInt("category_id");
+        int buy = rs.getInt("buy_quantity");
+        int free = rs.getInt("free_quantity");
+        double percent = rs.getDouble("percent_off");
+        BigDecimal bundlePrice = rs.getBigDecimal("bundle_price");
+
+        String problem = null;
+        if (type != Promotion.Type.BUNDLE && productIds.length == 0 && categoryId <= 0) {
+            problem = "no products or category";
+        } else if (type == Promotion.Type.PERCENT_OFF && (percent <= 0 || percent > 100)) {
+            problem = "percent_off must be between 0 and 100";
+        } else if (type == Promotion.Type.BUY_X_GET_Y && (buy <= 0 || free <= 0)) {
+            problem = "buy_quantity and free_quantity must be positive";
+        } else if (type == Promotion.Type.BUNDLE && (productIds.length < 2 || bundlePrice == null)) {
+            problem = "a bundle needs at least two products and a bundle_price";
+        }
+        if (problem != null) {
+            System.err.println("Ignoring promotion " + id + " (" + name + "): " + problem);
+            return null;
+        }
+
+        Timestamp validFrom = rs.getTimestamp("valid_from");
+        Timestamp validTo = rs.getTimestamp("valid_to");
+        Time dailyStart = rs.getTime("daily_start");
+        Time dailyEnd = rs.getTime("daily_end");
+        return new Promotion(id, name, type, categoryId, productIds, productQuantities, buy, free, percent,
+                (bundlePrice != null) ? bundlePrice.movePointRight(2).longValue() : 0,
+                (validFrom != null) ? validFrom.toLocalDateTime() : null,
+                (validTo != null) ? validTo.toLocalDateTime() : null,
+                (dailyStart != null) ? dailyStart.toLocalTime() : null,
+                (dailyEnd != null) ? dailyEnd.toLocalTime() : null);
+    }
+}
@@ -0,0 +1,299 @@
+package app;
+
+import javax.swing.SwingUtilities;
+import java.awt.EventQueue;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.FileHandler;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Watches every SQL statement issued through DatabaseConnection.
+ * <p>
+ * Connections are wrapped in dynamic proxies that time each execution, record the SQL text, the
+ * shape of the bound parameters (e.g. {@code (int, string)}) and the number of rows read. Anything
+ * slower than the threshold is written to a rolling slow-query log (logs/slow-query.N.log).
+ * <p>
+ * It also flags N+1 patterns: the same statement executed many times within one user action.
+ * On the Event Dispatch Thread an action is one AWT event (a click, a key press); background
+ * threads can mark actions explicitly with {@link #action(String)}.
+ * <p>
+ * Each statement is also emitted as a {@link PosEvents.JdbcStatement} flight recorder event.
+ */
+public final class QueryMonitor {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("pos.db.monitor", "true"));
+    private static final long SLOW_QUERY_MS = Long.getLong("pos.db.slowQueryMs", 200);
+    private static final int N_PLUS_ONE_THRESHOLD = Integer.getInteger("pos.db.nPlusOneThreshold", 5);
+    private static final Path LOG_DIR = Paths.get(System.getProperty("user.dir"), "logs");
+
+    private static final Logger LOG = createLogger();
+
+    /** Statement counts for the action currently running on a thread. */
+    private static final class ActionStats {
+        final Object token;
+        final String name;
+        final Map<String, Integer> counts = new HashMap<>();
+
+        ActionStats(Object token, String name) {
+            this.token = token;
+            this.name = name;
+        }
+    }
+
+    private static final ThreadLocal<ActionStats> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<String> EXPLICIT_ACTION = new ThreadLocal<>();
+
+    /** An explicit action on a background thread; see {@link #action(String)}. */
+    public interface Action extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private QueryMonitor() {}
+
+    private static Logger createLogger() {
+        Logger logger = Logger.getLogger("app.sql");
+        logger.setUseParentHandlers(false);
+        try {
+            Files.createDirectories(LOG_DIR);
+            FileHandler handler = new FileHandler(LOG_DIR.resolve("slow-query.%g.log").toString(), 1_000_000, 5, true);
+            handler.setFormatter(new SimpleFormatter());
+            logger.addHandler(handler);
+        } catch (IOException e) {
+            logger.setUseParentHandlers(true); // Fall back to the console
+            System.err.println("Could not open the slow-query log: " + e.getMessage());
+        }
+        return logger;
+    }
+
+    /**
+     * Wraps a connection so that its statements are monitored. Returns it unchanged if
+     * monitoring is disabled with {@code -Dpos.db.monitor=false}.
+     */
+    public static Connection wrap(Connection conn) {
+        if (!ENABLED) return conn;
+        return proxy(Connection.class, new ConnectionHandler(conn));
+    }
+
+    /**
+     * Marks the start of a user action on a background thread, for N+1 detection.
+     * The action ends when the returned handle is closed.
+     */
+    public static Action action(String name) {
+        EXPLICIT_ACTION.set(name);
+        return () -> {
+            flush(CURRENT.get());
+            CURRENT.remove();
+            EXPLICIT_ACTION.remove();
+        };
+    }
+
+    // --- Recording ---
+
+    private static void record(PosEvents.JdbcStatement event, String sql, String params, long elapsedNanos, long rows) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.sql = sql;
+            event.parameters = params;
+            event.rows = rows;
+            event.commit();
+        }
+        long elapsedMs = elapsedNanos / 1_000_000;
+        if (elapsedMs >= SLOW_QUERY_MS) {
+            LOG.warning(String.format("slow query: elapsed=%dms rows=%d params=%s thread=%s sql=%s",
+                    elapsedMs, rows, params, Thread.currentThread().getName(), sql));
+        }
+        countForAction(sql);
+    }
+
+    private static void countForAction(String sql) {
+        Object token;
+        String name;
+        if (EventQueue.isDispatchThread()) {
+            token = EventQueue.getCurrentEvent();
+            name = (token != null) ? describeEvent(token) : "EDT";
+        } else {
+            name = EXPLICIT_ACTION.get();
+            token = name;
+        }
+        if (token == null) return; // Background work outside an explicit action
+
+        ActionStats stats = CURRENT.get();
+        if (stats == null || stats.token != token) {
+            flush(stats);
+            stats = new ActionStats(token, name);
+            CURRENT.set(stats);
+            if (EventQueue.isDispatchThread()) {
+                // Report as soon as the current event has finished dispatching
+                ActionStats started = stats;
+                SwingUtilities.invokeLater(() -> {
+                    if (CURRENT.get() == started) {
+                        flush(started);
+                        CURRENT.remove();
+                    }
+                });
+            }
+        }
+        stats.counts.merge(sql, 1, Integer::sum);
+    }
+
+    private static void flush(ActionStats stats) {
+        if (stats == null) return;
+        stats.counts.forEach((sql, count) -> {
+            if (count >= N_PLUS_ONE_THRESHOLD) {
+                LOG.warning(String.format("possible N+1: executed %d times in one action (%s): %s", count, stats.name, sql));
+            }
+        });
+    }
+
+    private static String describeEvent(Object event) {
+        String text = event.toString();
+        return text.length() > 120 ? text.substring(0, 120) + "..." : text;
+    }
+
+    private static String describeType(String setterName, Object value) {
+        if ("setNull".equals(setterName)) return "null";
+        if ("setObject".equals(setterName) && value != null) return value.getClass().getSimpleName().toLowerCase();
+        String type = setterName.substring(3);
+        return type.isEmpty() ? "?" : type.substring(0, 1).toLowerCase() + type.substring(1);
+    }
+
+    // --- Proxies ---
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(QueryMonitor.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = QueryMonitor.invoke(target, method, args);
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return proxy(PreparedStatement.class, new StatementHandler((Statement) result, (String) args[0]));
+                case "createStatement":
+                    return proxy(Statement.class, new StatementHandler((Statement) result, null));
+                default:
+                    return result;
+            }
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String preparedSql;
+        private final List<String> paramTypes = new ArrayList<>();
+        private int batchSize = 0;
+
+        StatementHandler(Statement target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                int index = (Integer) args[0];
+                while (paramTypes.size() < index) paramTypes.add("?");
+                paramTypes.set(index - 1, describeType(name, args[1]));
+                return QueryMonitor.invoke(target, method, args);
+            }
+            if (name.equals("addBatch")) {
+                batchSize++;
+                return QueryMonitor.invoke(target, method, args);
+            }
+            if (!name.startsWith("execute")) {
+                return QueryMonitor.invoke(target, method, args);
+            }
+
+            String sql = (args != null && args.length > 0 && args[0] instanceof String) ? (String) args[0] : preparedSql;
+            String params = "(" + String.join(", ", paramTypes) + ")" + (batchSize > 0 ? " x" + batchSize : "");
+            PosEvents.JdbcStatement event = new PosEvents.JdbcStatement();
+            event.begin();
+            long start = System.nanoTime();
+            Object result = QueryMonitor.invoke(target, method, args);
+            long elapsed = System.nanoTime() - start;
+
+            if (result instanceof ResultSet) {
+                // Rows are counted as they are read; the query is recorded when the result set is closed
+                return proxy(ResultSet.class, new ResultSetHandler((ResultSet) result, event, sql, params, elapsed));
+            }
+            long rows = 0;
+            if (result instanceof Integer) rows = (Integer) result;
+            else if (result instanceof Long) rows = (Long) result;
+            else if (result instanceof int[]) for (int n : (int[]) result) rows += Math.max(n, 0);
+            record(event, sql, params, elapsed, rows);
+            if (name.equals("executeBatch")) batchSize = 0;
+            return result;
+        }
+    }
+
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final PosEvents.JdbcStatement event;
+        private final String sql;
+        private final String params;
+        private final long executeNanos;
+        private long fetchNanos = 0;
+        private long rows = 0;
+        private boolean recorded = false;
+
+        ResultSetHandler(ResultSet target, PosEvents.JdbcStatement event, String sql, String params, long executeNanos) {
+            this.target = target;
+            this.event = event;
+            this.sql = sql;
+            this.params = params;
+            this.executeNanos = executeNanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next": {
+                    long start = System.nanoTime();
+                    Object hasRow = QueryMonitor.invoke(target, method, args);
+                    fetchNanos += System.nanoTime() - start;
+                    if (Boolean.TRUE.equals(hasRow)) rows++;
+                    return hasRow;
+                }
+                case "close":
+                    if (!recorded) {
+                        recorded = true;
+                        record(event, sql, params, executeNanos + fetchNanos, rows);
+                    }
+                    return QueryMonitor.invoke(target, method, args);
+                default:
+                    return QueryMonitor.invoke(target, method, args);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package app;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * Criteria for the sales report. Every criterion is optional; null means "any".
+ */
+public class SalesFilter {
+
+    /** A filter that matches every sale. */
+    public static final SalesFilter NONE = new SalesFilter(null, null, null, null, null, null);
+
+    private final Timestamp from;
+    private final Timestamp to;
+    private final String paymentMethod;
+    private final String cardType;
+    private final BigDecimal minTotal;
+    private final Integer productId;
+    private final IntList saleIds;
+
+    /**
+     * @param from          Earliest sale_date to include (inclusive).
+     * @param to            Sale_date to stop at (exclusive).
+     * @param paymentMethod "Cash" or "Card".
+     * @param cardType      Card brand, e.g. "Visa".
+     * @param minTotal      Smallest sale total to include.
+     * @param productId     Only sales with at least one line for this product.
+     */
+    public SalesFilter(Timestamp from, Timestamp to, String paymentMethod, String cardType, BigDecimal minTotal, Integer productId) {
+        this(from, to, paymentMethod, cardType, minTotal, productId, null);
+    }
+
+    private SalesFilter(Timestamp from, Timestamp to, String paymentMethod, String cardType, BigDecimal minTotal,
+                        Integer productId, IntList saleIds) {
+        this.from = from;
+        this.to = to;
+        this.paymentMethod = paymentMethod;
+        this.cardType = cardType;
+        this.minTotal = minTotal;
+        this.productId = productId;
+        this.saleIds = saleIds;
+    }
+
+    /**
+     * Returns a copy of this filter whose start is moved forward to {@code since} if that is later.
+     */
+    public SalesFilter startingAt(Timestamp since) {
+        Timestamp start = (from == null || since.after(from)) ? since : from;
+        return new SalesFilter(start, to, paymentMethod, cardType, minTotal, productId, saleIds);
+    }
+
+    /**
+     * Returns a copy of this filter that replaces the product criterion with an explicit list of
+     * sale IDs, typically looked up in the SalesIndex, so the database reads those rows by key.
+     */
+    public SalesFilter restrictedTo(IntList saleIds) {
+        return new SalesFilter(from, to, paymentMethod, cardType, minTotal, null, saleIds);
+    }
+
+    public Timestamp getFrom() { return from; }
+    public Timestamp getTo() { return to; }
+    public String getPaymentMethod() { return paymentMethod; }
+    public String getCardType() { return cardType; }
+    public BigDecimal getMinTotal() { return minTotal; }
+    public Integer getProductId() { return productId; }
+    public IntList getSaleIds() { return saleIds; }
+}
@@ -0,0 +1,207 @@
+package app;
+
+import java.sql.*;
+
+/**
+ * An in-memory inverted index from product ID to the IDs of the sales that contain it, for
+ * "who bought X" lookups (recalls, price disputes) without scanning sale_items.
+ * <p>
+ * Each product has a compressed {@link PostingList} of sale IDs, and the date of every sale is
+ * kept in a primitive map so date ranges are applied without touching the database. The index is
+ * built once in the background from the (product_id, sale_id) index on sale_items. After that it is
+ * kept current in two ways: SalesLogger adds this terminal's sales as they are committed, and
+ * every lookup first reads the sale_items rows added since the last one (by any terminal).
+ * <p>
+ * Until the initial build has finished, lookups return null and callers fall back to SQL.
+ */
+public class SalesIndex {
+
+    // AUTO_INCREMENT values can commit out of order; re-reading a window of recent rows catches
+    // any that committed after a later row was already seen. Adding a row twice is harmless.
+    private static final int CATCH_UP_OVERLAP_ROWS = 500;
+    // Above this many matches a key lookup per sale costs more than the indexed subquery
+    private static final int MAX_KEY_LOOKUPS = 1000;
+
+    private final IntObjectMap<PostingList> salesByProduct = new IntObjectMap<>(1024);
+    private final IntLongMap saleDates = new IntLongMap(4096);
+    private long itemWatermark = 0; // Highest sale_items.id read
+    private volatile boolean ready = false;
+
+    /**
+     * Builds the index on a background thread.
+     */
+    public void startBuilding() {
+        Thread builder = new Thread(this::buildSafely, "sales-index");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    private void buildSafely() {
+        try {
+            build();
+        } catch (SQLException e) {
+            System.err.println("Sales index not available, lookups will use SQL: " + e.getMessage());
+        }
+    }
+
+    private void build() throws SQLException {
+        try (Connection conn = DatabaseConnection.getReportingConnection()) {
+            long maxItemId;
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM sale_items")) {
+                rs.next();
+                maxItemId = rs.getLong(1);
+            }
+
+            // Read in (product_id, sale_id) order so every posting is a cheap append
+            IntObjectMap<PostingList> postings = new IntObjectMap<>(1024);
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT product_id, sale_id FROM sale_items WHERE id <= ? ORDER BY product_id, sale_id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                pstmt.setLong(1, maxItemId);
+                pstmt.setFetchSize(Integer.MIN_VALUE); // Connector/J: stream rows instead of buffering them all
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    int currentProduct = Integer.MIN_VALUE;
+                    PostingList list = null;
+                    while (rs.next()) {
+                        int productId = rs.getInt(1);
+                        if (productId != currentProduct) {
+                            currentProduct = productId;
+                            list = new PostingList();
+                            postings.put(productId, list);
+                        }
+                        list.add(rs.getInt(2));
+                    }
+                }
+            }
+
+            // Every sale referenced above was committed together with its items, so it is included here
+            IntLongMap dates = new IntLongMap(4096);
+            try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(Integer.MIN_VALUE);
+                try (ResultSet rs = stmt.executeQuery("SELECT id, sale_date FROM sales")) {
+                    while (rs.next()) {
+                        dates.put(rs.getInt(1), rs.getTimestamp(2).getTime());
+                    }
+                }
+            }
+
+            synchronized (this) {
+                // Keep anything SalesLogger added while the build was running
+                salesByProduct.forEach((productId, list) -> {
+                    PostingList target = postings.get(productId);
+                    if (target == null) postings.put(productId, list);
+                    else for (int saleId : list.toArray()) target.add(saleId);
+                });
+                saleDates.forEach(dates::put);
+                salesByProduct.clear();
+                postings.forEach(salesByProduct::put);
+                saleDates.clear();
+                dates.forEach(saleDates::put);
+                itemWatermark = maxItemId;
+                ready = true;
+            }
+        }
+    }
+
+    /**
+     * Adds a sale logged by this terminal. The sale date is the local clock, which the next
+     * catch-up replaces with the database timestamp.
+     */
+    public synchronized void addSale(int saleId, long saleMillis, Cart cart) {
+        saleDates.put(saleId, saleMillis);
+        cart.forEach((product, quantity) -> add(product.getId(), saleId));
+    }
+
+    private void add(int productId, int saleId) {
+        PostingList list = salesByProduct.get(productId);
+        if (list == null) {
+            list = new PostingList();
+            salesByProduct.put(productId, list);
+        }
+        list.add(saleId);
+    }
+
+    /**
+     * Returns the IDs of the sales containing a product, highest ID first.
+     *
+     * @param productId The product to look up.
+     * @param from      Earliest sale_date to include (inclusive), or null.
+     * @param to        Sale_date to stop at (exclusive), or null.
+     * @return The sale IDs, or null if the index is not built yet.
+     */
+    public IntList findSales(int productId, Timestamp from, Timestamp to) {
+        if (!ready) return null;
+        catchUp();
+        long fromMillis = (from != null) ? from.getTime() : Long.MIN_VALUE;
+        long toMillis = (to != null) ? to.getTime() : Long.MAX_VALUE;
+        synchronized (this) {
+            PostingList list = salesByProduct.get(productId);
+            IntList result = new IntList(list != null ? list.size() : 0);
+            if (list == null) return result;
+            int[] saleIds = list.toArray();
+            for (int i = saleIds.length - 1; i >= 0; i--) {
+                long date = saleDates.get(saleIds[i], Long.MIN_VALUE);
+                if (date >= fromMillis && date < toMillis) {
+                    result.add(saleIds[i]);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Rewrites a filter's product criterion into the matching sale IDs, so the database reads
+     * those sales by primary key. Returns the filter unchanged if it has no product criterion,
+     * the index is not built yet, or the product is in too many sales for key lookups to pay off.
+     */
+    public SalesFilter resolve(SalesFilter filter) {
+        if (filter.getProductId() == null) return filter;
+        IntList saleIds = findSales(filter.getProductId(), filter.getFrom(), filter.getTo());
+        if (saleIds == null || saleIds.size() > MAX_KEY_LOOKUPS) return filter;
+        return filter.restrictedTo(saleIds);
+    }
+
+    /**
+     * Returns how many sales contain a product, or -1 if the index is not built yet.
+     */
+    public synchronized int countSales(int productId) {
+        if (!ready) return -1;
+        PostingList list = salesByProduct.get(productId);
+        return (list != null) ? list.size() : 0;
+    }
+
+    /**
+     * Reads the sale_items rows added since the last catch-up. This is a primary key range
+     * read of a handful of rows.
+     */
+    private void catchUp() {
+        long since;
+        synchronized (this) {
+            since = Math.max(0, itemWatermark - CATCH_UP_OVERLAP_ROWS);
+        }
+        String sql = "SELECT si.id, si.sale_id, si.product_id, s.sale_date FROM sale_items si " +
+                "JOIN sales s ON s.id = si.sale_id WHERE si.id > ? ORDER BY si.id";
+        try (Connection conn = DatabaseConnection.getReportingConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, since);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                synchronized (this) {
+                    while (rs.next()) {
+                        int saleId = rs.getInt(2);
+                        add(rs.getInt(3), saleId);
+                        saleDates.put(saleId, rs.getTimestamp(4).getTime());
+                        itemWatermark = Math.max(itemWatermark, rs.getLong(1));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            // Serve what we have; the next lookup tries again
+            System.err.println("Sales index catch-up failed: " + e.getMessage());
+        }
+    }
+}
@@ -2,86 +2,109 @@ package app;
 
 import java.math.BigDecimal;
 import java.sql.*;
-import java.util.Map;
 
 /**
  * Handles all database operations related to logging sales transactions.
  * This class uses transactions to ensure data integrity.
+ * Sale IDs are allocated client-side, so the sale row and its items can be sent without first
+ * waiting for an AUTO_INCREMENT key.
  */
 public class SalesLogger {
 
+    private final IdBlockAllocator saleIds = new IdBlockAllocator("sales", 50);
+    private final SalesIndex salesIndex;
+    private final TopSellers topSellers;
+    private final BoughtTogether boughtTogether;
+    private final DemandForecaster demandForecaster;
+
+    public SalesLogger(SalesIndex salesIndex, TopSellers topSellers, BoughtTogether boughtTogether, DemandForecaster demandForecaster) {
+        this.salesIndex = salesIndex;
+        this.topSellers = topSellers;
+        this.boughtTogether = boughtTogether;
+        this.demandForecaster = demandForecaster;
+    }
+
     /**
      * Logs a complete sale, including items and detailed payment information, to the database.
      *
-     * @param cart           A map of products and their quantities.
-     * @param totalPrice     The total price of the sale.
+     * @param cart           The products and their quantities.
+     * @param pricing        The promotion discounts on the cart, recorded per line.
+     * @param totalPrice     The total price of the sale, after discounts.
      * @param paymentMethod  The method of payment ("Cash" or "Card").
      * @param cashTendered   The cash amount given by the customer (for cash sales).
      * @param changeGiven    The change returned to the customer (for cash sales).
      * @param cardType       The type of card used (for card sales).
+     * @return The ID of the logged sale, or -1 if it could not be saved.
      */
-    public void logSale(Map<Product, Integer> cart, BigDecimal totalPrice, String paymentMethod, BigDecimal cashTendered, BigDecimal changeGiven, String cardType) {
+    public int logSale(Cart cart, CartPricing pricing, BigDecimal totalPrice, String paymentMethod, BigDecimal cashTendered, BigDecimal changeGiven, String cardType) {
         Connection conn = null;
+        int saleId = -1;
         try {
+            // The ID is known before any row is written (usually without touching the database at all)
+            saleId = saleIds.nextId();
+
             conn = DatabaseConnection.getConnection();
             conn.setAutoCommit(false); // Start transaction
 
             // 1. Insert into the 'sales' table with the new payment details
-            String saleSql = "INSERT INTO sales (total_price, payment_method, cash_tendered, change_given, card_type) VALUES (?, ?, ?, ?, ?)";
-            int saleId;
+            String saleSql = "INSERT INTO sales (id, total_price, payment_method, cash_tendered, change_given, card_type) VALUES (?, ?, ?, ?, ?, ?)";
 
-            try (PreparedStatement salePstmt = conn.prepareStatement(saleSql, Statement.RETURN_GENERATED_KEYS)) {
-                salePstmt.setBigDecimal(1, totalPrice);
-                salePstmt.setString(2, paymentMethod);
+            try (PreparedStatement salePstmt = conn.prepareStatement(saleSql)) {
+                salePstmt.setInt(1, saleId);
+                salePstmt.setBigDecimal(2, totalPrice);
+                salePstmt.setString(3, paymentMethod);
 
                 // Handle nullable decimal fields for cash details
                 if (cashTendered != null) {
-                    salePstmt.setBigDecimal(3, cashTendered);
+                    salePstmt.setBigDecimal(4, cashTendered);
                 } else {
-                    salePstmt.setNull(3, Types.DECIMAL);
+                    salePstmt.setNull(4, Types.DECIMAL);
                 }
                 if (changeGiven != null) {
-                    salePstmt.setBigDecimal(4, changeGiven);
+                    salePstmt.setBigDecimal(5, changeGiven);
                 } else {
-                    salePstmt.setNull(4, Types.DECIMAL);
+                    salePstmt.setNull(5, Types.DECIMAL);
                 }
 
                 // Handle nullable string field for card type
                 if (cardType != null && !cardType.isEmpty()) {
-                    salePstmt.setString(5, cardType);
+                    salePstmt.setString(6, cardType);
                 } else {
-                    salePstmt.setNull(5, Types.VARCHAR);
+                    salePstmt.setNull(6, Types.VARCHAR);
                 }
 
                 salePstmt.executeUpdate();
-
-                // Get the auto-generated ID of the new sale
-                try (ResultSet generatedKeys = salePstmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        saleId = generatedKeys.getInt(1);
-                    } else {
-                        throw new SQLException("Creating sale failed, no ID obtained.");
-                    }
-                }
             }
 
             // 2. Insert each product into the 'sale_items' table
-            String itemsSql = "INSERT INTO sale_items (sale_id, product_id, quantity, price_at_sale) VALUES (?, ?, ?, ?)";
+            String itemsSql = "INSERT INTO sale_items (sale_id, product_id, quantity, price_at_sale, discount, promotion_id) VALUES (?, ?, ?, ?, ?, ?)";
             try (PreparedStatement itemsPstmt = conn.prepareStatement(itemsSql)) {
-                for (Map.Entry<Product, Integer> entry : cart.entrySet()) {
-                    Product product = entry.getKey();
-                    int quantity = entry.getValue();
+                for (int i = 0; i < cart.size(); i++) {
+                    Product product = cart.getProduct(i);
+                    int quantity = cart.getQuantityAt(i);
 
                     itemsPstmt.setInt(1, saleId);
                     itemsPstmt.setInt(2, product.getId());
                     itemsPstmt.setInt(3, quantity);
                     itemsPstmt.setBigDecimal(4, BigDecimal.valueOf(product.getPrice())); // Use BigDecimal
+                    itemsPstmt.setBigDecimal(5, pricing.getDiscount(product.getId()));
+                    Promotion promotion = pricing.getPromotion(product.getId());
+                    if (promotion != null) {
+                        itemsPstmt.setInt(6, promotion.getId());
+                    } else {
+                        itemsPstmt.setNull(6, Types.INTEGER);
+                    }
                     itemsPstmt.addBatch();
                 }
                 itemsPstmt.executeBatch();
             }
 
             conn.commit(); // Commit transaction if all operations succeed
+            salesIndex.addSale(saleId, System.currentTimeMillis(), cart);
+            topSellers.recordSale(cart);
+            boughtTogether.addSale(cart);
+            demandForecaster.addSale(saleId, cart);
+            return saleId;
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -103,5 +126,6 @@ public class SalesLogger {
                 }
             }
         }
+        return -1;
     }
 }
\ No newline at end of file
@@ -3,24 +3,75 @@ package app;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Shows the sales history and the items of the selected sale.
+ * <p>
+ * The filter bar narrows the list by period, payment method, card type, minimum total and
+ * product. Filtering and the totals are done by the database, so only the matching rows (at most
+ * {@value #MAX_ROWS}) are transferred; the totals always cover the whole filtered set.
+ * <p>
+ * In live-tail mode the report polls for sales newer than the last one it has seen and prepends
+ * them to the table, so it can stay open all day without reloading the history. Each poll re-reads
+ * a short overlap window, because a sale's timestamp is taken before its transaction commits and
+ * the reporting replica may lag; sales already shown are skipped by ID.
+ */
 public class SalesReportFrame extends JFrame {
 
+    private static final long TAIL_INTERVAL_SECONDS = Long.getLong("pos.report.tailSeconds", 5);
+    private static final long TAIL_OVERLAP_MS = 120_000;
+    private static final int MAX_ROWS = 2000;
+    private static final String ANY = "Any";
+    private static final String[] PERIODS = {"All time", "Today", "Yesterday", "Last 7 days", "Last 30 days", "Custom"};
+
     private final Inventory inventory;
+    private final CatalogCache catalog;
+    private final SalesIndex salesIndex;
+    private volatile SalesFilter currentFilter = SalesFilter.NONE;
+    private SalesSummary currentSummary;
+    private int shownRows = 0;
+    private final IntIntMap shownSaleIds = new IntIntMap();
+    private volatile Timestamp watermark; // Latest sale_date shown, or the load time if later
+    private ScheduledExecutorService tailScheduler;
+    private int loadedSaleId = -1;
+    private JCheckBox liveTailCheckBox;
+    private JLabel tailStatusLabel;
+    private JLabel summaryLabel;
+    private JComboBox<String> periodComboBox;
+    private JSpinner fromSpinner;
+    private JSpinner toSpinner;
+    private JComboBox<String> paymentComboBox;
+    private JComboBox<String> cardTypeComboBox;
+    private JTextField minTotalField;
+    private JTextField productRefField;
+    private JButton applyButton;
     private JTable salesTable;
     private DefaultTableModel salesTableModel;
     private JTable saleItemsTable;
     private DefaultTableModel saleItemsTableModel;
 
-    public SalesReportFrame(Inventory inventory) {
+    public SalesReportFrame(Inventory inventory, CatalogCache catalog, SalesIndex salesIndex) {
         this.inventory = inventory;
+        this.catalog = catalog;
+        this.salesIndex = salesIndex;
 
         setTitle("Sales Report");
         setSize(1000, 700);
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setLocationRelativeTo(null);
         setLayout(new BorderLayout(10, 10));
+        add(createFilterBar(), BorderLayout.NORTH);
 
         // --- Master Table (All Sales) ---
         salesTableModel = new DefaultTableModel(new String[]{"Sale ID", "Date", "Total Price", "Payment Method"}, 0);
@@ -43,6 +94,18 @@ public class SalesReportFrame extends JFrame {
         JButton backButton = new JButton("⬅ Back to Dashboard");
         backButton.addActionListener(e -> this.dispose());
         southPanel.add(backButton);
+        liveTailCheckBox = new JCheckBox("Live", true);
+        liveTailCheckBox.setToolTipText("Add new sales to the top of the list as they happen");
+        liveTailCheckBox.addActionListener(e -> {
+            if (liveTailCheckBox.isSelected()) startLiveTail(); else stopLiveTail();
+        });
+        southPanel.add(liveTailCheckBox);
+        tailStatusLabel = new JLabel();
+        southPanel.add(tailStatusLabel);
+        summaryLabel = new JLabel();
+        summaryLabel.setFont(summaryLabel.getFont().deriveFont(Font.BOLD));
+        southPanel.add(Box.createHorizontalStrut(20));
+        southPanel.add(summaryLabel);
         add(southPanel, BorderLayout.SOUTH);
 
         // --- Add Listener to the Master Table ---
@@ -52,29 +115,295 @@ public class SalesReportFrame extends JFrame {
                 if (selectedRow != -1) {
                     // Get the Sale ID from the selected row (it's in the first column)
                     int saleId = (int) salesTable.getValueAt(selectedRow, 0);
-                    loadSaleItems(saleId);
+                    if (saleId != loadedSaleId) { // Rows prepended by the live tail shift the selection
+                        loadSaleItems(saleId);
+                    }
                 }
             }
         });
 
         // Load initial data
-        loadSales();
+        loadSales(SalesFilter.NONE);
+        startLiveTail();
+    }
+
+    private JPanel createFilterBar() {
+        JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+
+        periodComboBox = new JComboBox<>(PERIODS);
+        fromSpinner = createDateSpinner();
+        toSpinner = createDateSpinner();
+        periodComboBox.addActionListener(e -> {
+            boolean custom = "Custom".equals(periodComboBox.getSelectedItem());
+            fromSpinner.setEnabled(custom);
+            toSpinner.setEnabled(custom);
+        });
+        fromSpinner.setEnabled(false);
+        toSpinner.setEnabled(false);
+        panel.add(new JLabel("Period:"));
+        panel.add(periodComboBox);
+        panel.add(new JLabel("From:"));
+        panel.add(fromSpinner);
+        panel.add(new JLabel("To:"));
+        panel.add(toSpinner);
+
+        paymentComboBox = new JComboBox<>(new String[]{ANY, "Cash", "Card"});
+        cardTypeComboBox = new JComboBox<>(new String[]{ANY, "Visa", "Mastercard", "Amex", "Discover"});
+        panel.add(new JLabel("Payment:"));
+        panel.add(paymentComboBox);
+        panel.add(new JLabel("Card:"));
+        panel.add(cardTypeComboBox);
+
+        minTotalField = new JTextField(6);
+        productRefField = new JTextField(8);
+        panel.add(new JLabel("Min total:"));
+        panel.add(minTotalField);
+        panel.add(new JLabel("Product ref #:"));
+        panel.add(productRefField);
+
+        applyButton = new JButton("Apply");
+        applyButton.addActionListener(e -> applyFilter());
+        JButton clearButton = new JButton("Clear");
+        clearButton.addActionListener(e -> clearFilter());
+        panel.add(applyButton);
+        panel.add(clearButton);
+        return panel;
     }
 
-    private void loadSales() {
+    private static JSpinner createDateSpinner() {
+        JSpinner spinner = new JSpinner(new SpinnerDateModel());
+        spinner.setEditor(new JSpinner.DateEditor(spinner, "yyyy-MM-dd"));
+        return spinner;
+    }
+
+    private void applyFilter() {
+        SalesFilter filter = readFilter();
+        if (filter != null) {
+            loadSales(filter);
+        }
+    }
+
+    private void clearFilter() {
+        periodComboBox.setSelectedIndex(0);
+        paymentComboBox.setSelectedIndex(0);
+        cardTypeComboBox.setSelectedIndex(0);
+        minTotalField.setText("");
+        productRefField.setText("");
+        loadSales(SalesFilter.NONE);
+    }
+
+    /**
+     * Builds a filter from the filter bar.
+     *
+     * @return The filter, or null if an entry is invalid (the user has been told why).
+     */
+    private SalesFilter readFilter() {
+        LocalDate today = LocalDate.now();
+        LocalDate fromDay = null;
+        LocalDate toDay = null; // Exclusive
+        switch ((String) periodComboBox.getSelectedItem()) {
+            case "Today": fromDay = today; toDay = today.plusDays(1); break;
+            case "Yesterday": fromDay = today.minusDays(1); toDay = today; break;
+            case "Last 7 days": fromDay = today.minusDays(6); break;
+            case "Last 30 days": fromDay = today.minusDays(29); break;
+            case "Custom":
+                fromDay = toLocalDate((Date) fromSpinner.getValue());
+                toDay = toLocalDate((Date) toSpinner.getValue()).plusDays(1);
+                if (!fromDay.isBefore(toDay)) {
+                    JOptionPane.showMessageDialog(this, "The start date must not be after the end date.", "Invalid Filter", JOptionPane.ERROR_MESSAGE);
+                    return null;
+                }
+                break;
+            default: break;
+        }
+
+        String payment = (String) paymentComboBox.getSelectedItem();
+        String cardType = (String) cardTypeComboBox.getSelectedItem();
+
+        BigDecimal minTotal = null;
+        String minText = minTotalField.getText().trim();
+        if (!minText.isEmpty()) {
+            try {
+                minTotal = new BigDecimal(minText);
+            } catch (NumberFormatException e) {
+                JOptionPane.showMessageDialog(this, "Min total must be a number.", "Invalid Filter", JOptionPane.ERROR_MESSAGE);
+                return null;
+            }
+        }
+
+        Integer productId = null;
+        String ref = productRefField.getText().trim();
+        if (!ref.isEmpty()) {
+            Product product = catalog.findByRefNumber(ref);
+            if (product == null) {
+                JOptionPane.showMessageDialog(this, "No product with ref # " + ref + ".", "Invalid Filter", JOptionPane.ERROR_MESSAGE);
+                return null;
+            }
+            productId = product.getId();
+        }
+
+        return new SalesFilter(toTimestamp(fromDay), toTimestamp(toDay),
+                ANY.equals(payment) ? null : payment,
+                ANY.equals(cardType) ? null : cardType,
+                minTotal, productId);
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static Timestamp toTimestamp(LocalDate day) {
+        return (day != null) ? Timestamp.valueOf(day.atStartOfDay()) : null;
+    }
+
+    @Override
+    public void dispose() {
+        stopLiveTail();
+        super.dispose();
+    }
+
+    /**
+     * Loads the sales and totals for a filter on a background thread, then replaces the table.
+     */
+    private void loadSales(SalesFilter filter) {
+        currentFilter = filter;
+        applyButton.setEnabled(false);
+        summaryLabel.setText("Loading...");
+        new SwingWorker<List<Sale>, Void>() {
+            private SalesSummary summary;
+            private Timestamp loadedAt;
+
+            @Override
+            protected List<Sale> doInBackground() {
+                loadedAt = new Timestamp(System.currentTimeMillis()); // Before the query, so nothing falls between
+                SalesFilter query = salesIndex.resolve(filter); // "Who bought X" via the in-memory index
+                summary = inventory.summarizeSales(query);
+                return inventory.findSales(query, MAX_ROWS);
+            }
+
+            @Override
+            protected void done() {
+                applyButton.setEnabled(true);
+                if (filter != currentFilter) return; // Superseded by a newer filter
+                try {
+                    showSales(get(), summary, loadedAt);
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * @param loadedAt When the sales were read. The live tail starts from there when no sale
+     *                 matched, instead of scanning the whole history on every tick.
+     */
+    private void showSales(List<Sale> sales, SalesSummary summary, Timestamp loadedAt) {
         salesTableModel.setRowCount(0); // Clear existing data
-        List<Sale> sales = inventory.getAllSales();
+        saleItemsTableModel.setRowCount(0);
+        loadedSaleId = -1;
+        shownSaleIds.clear();
+        watermark = loadedAt;
         for (Sale sale : sales) {
-            salesTableModel.addRow(new Object[]{
-                    sale.getId(),
-                    sale.getFormattedDate(),
-                    String.format("%.2f", sale.getTotalPrice()),
-                    sale.getPaymentMethod()
-            });
+            salesTableModel.addRow(toRow(sale));
+            markShown(sale);
+        }
+        shownRows = sales.size();
+        currentSummary = summary;
+        updateSummaryLabel();
+    }
+
+    private void updateSummaryLabel() {
+        if (currentSummary == null) {
+            summaryLabel.setText("Totals unavailable");
+            return;
+        }
+        String text = String.format("%d sales   Total: %.2f   Average: %.2f",
+                currentSummary.getSaleCount(), currentSummary.getTotalRevenue(), currentSummary.getAverageSale());
+        if (shownRows < currentSummary.getSaleCount()) {
+            text += "   (showing the latest " + shownRows + ")";
+        }
+        summaryLabel.setText(text);
+    }
+
+    private static Object[] toRow(Sale sale) {
+        return new Object[]{
+                sale.getId(),
+                sale.getFormattedDate(),
+                String.format("%.2f", sale.getTotalPrice()),
+                sale.getPaymentMethod()
+        };
+    }
+
+    private void markShown(Sale sale) {
+        shownSaleIds.put(sale.getId(), 1);
+        if (watermark == null || sale.getSaleDate().after(watermark)) {
+            watermark = sale.getSaleDate();
+        }
+    }
+
+    // --- Live tail ---
+
+    private void startLiveTail() {
+        if (tailScheduler != null) return;
+        tailScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sales-report-tail");
+            t.setDaemon(true);
+            return t;
+        });
+        tailScheduler.scheduleWithFixedDelay(this::pollNewSales, TAIL_INTERVAL_SECONDS, TAIL_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void stopLiveTail() {
+        if (tailScheduler != null) {
+            tailScheduler.shutdownNow();
+            tailScheduler = null;
+        }
+    }
+
+    /**
+     * Runs on the tail thread: fetches the sales since the watermark (minus the overlap window)
+     * and hands them to the EDT.
+     */
+    private void pollNewSales() {
+        QueryMonitor.Action action = QueryMonitor.action("sales live tail");
+        try {
+            Timestamp last = watermark;
+            long from = (last != null) ? last.getTime() : System.currentTimeMillis(); // Not loaded yet: only new sales
+            Timestamp since = new Timestamp(from - TAIL_OVERLAP_MS);
+            SalesFilter filter = currentFilter;
+            List<Sale> sales = inventory.getSalesSince(filter, since);
+            SwingUtilities.invokeLater(() -> prependSales(filter, sales));
+        } catch (RuntimeException e) {
+            e.printStackTrace(); // Keep the scheduled task alive
+        } finally {
+            action.close();
+        }
+    }
+
+    /**
+     * Inserts the sales not yet shown at the top of the table, newest first. Each insert fires a
+     * single-row event, so the selection and scroll position are kept.
+     */
+    private void prependSales(SalesFilter filter, List<Sale> sales) {
+        if (tailScheduler == null) return; // Stopped while the poll was running
+        if (filter != currentFilter) return; // The filter changed while the poll was running
+        for (Sale sale : sales) { // Oldest first, so the newest ends up on top
+            if (shownSaleIds.containsKey(sale.getId())) continue;
+            salesTableModel.insertRow(0, toRow(sale));
+            markShown(sale);
+            shownRows++;
+            if (currentSummary != null) {
+                currentSummary = new SalesSummary(currentSummary.getSaleCount() + 1,
+                        currentSummary.getTotalRevenue().add(sale.getTotalPrice()));
+            }
         }
+        updateSummaryLabel();
+        tailStatusLabel.setText("Updated " + new SimpleDateFormat("HH:mm:ss").format(new Date()));
     }
 
     private void loadSaleItems(int saleId) {
+        loadedSaleId = saleId;
         saleItemsTableModel.setRowCount(0); // Clear existing data
         List<SaleItem> items = inventory.getSaleItems(saleId);
         for (SaleItem item : items) {
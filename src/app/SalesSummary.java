@@ -0,0 +1,25 @@
+package app;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Totals for all sales matching a SalesFilter, computed by the database.
+ */
+public class SalesSummary {
+    private final int saleCount;
+    private final BigDecimal totalRevenue;
+
+    public SalesSummary(int saleCount, BigDecimal totalRevenue) {
+        this.saleCount = saleCount;
+        this.totalRevenue = totalRevenue;
+    }
+
+    public int getSaleCount() { return saleCount; }
+    public BigDecimal getTotalRevenue() { return totalRevenue; }
+
+    public BigDecimal getAverageSale() {
+        if (saleCount == 0) return BigDecimal.ZERO;
+        return totalRevenue.divide(BigDecimal.valueOf(saleCount), 2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,369 @@
+package app;
+
+import java.sql.*;
+import java.util.List;
+
+/**
+ * Brings the database schema up to date at startup and checks that the performance-critical
+ * query paths are backed by indexes.
+ * <p>
+ * Migrations are numbered and recorded in the schema_version table; only those newer than the
+ * recorded version run. Every step is also idempotent (it checks information_schema before
+ * creating anything), so a database created by hand from the README script upgrades cleanly.
+ * Terminals starting at the same time serialise on a MySQL named lock.
+ */
+public class SchemaManager {
+
+    private static final String LOCK_NAME = "pos_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 10;
+
+    private interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private static final class Migration {
+        final int version;
+        final String description;
+        final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    /**
+     * A query the application depends on, in a form that can be EXPLAINed.
+     */
+    private static final class QueryPath {
+        final String usedBy;
+        final String sql;
+
+        QueryPath(String usedBy, String sql) {
+            this.usedBy = usedBy;
+            this.sql = sql;
+        }
+    }
+
+    private final List<Migration> migrations = List.of(
+            new Migration(1, "Base tables", this::createBaseTables),
+            new Migration(2, "Product row versions", c -> ensureColumn(c, "products", "version", "INT NOT NULL DEFAULT 0")),
+            new Migration(3, "Catalog change log", this::createCatalogChangeLog),
+            new Migration(4, "Sale ID blocks", c -> execute(c,
+                    "CREATE TABLE IF NOT EXISTS id_blocks (name VARCHAR(64) PRIMARY KEY, next_value INT NOT NULL)")),
+            new Migration(5, "Indexes for sales, sale items and catalog lookups", this::createCoreIndexes),
+            new Migration(6, "Indexes for sales report filters", this::createReportFilterIndexes),
+            new Migration(7, "Promotions and line discounts", this::createPromotions),
+            new Migration(8, "Stock adjustment audit trail", this::createStockAdjustments),
+            new Migration(9, "Product reorder levels", c -> ensureColumn(c, "products", "reorder_level", "INT NOT NULL DEFAULT 0")),
+            new Migration(10, "Category hierarchy", this::createCategoryHierarchy),
+            // Terminals only re-read a product whose version changed, so every writer must bump it,
+            // including SQL scripts and admin tools that do not know about the column
+            new Migration(11, "Product version bump on every update", c -> ensureTrigger(c, "products_version_bu",
+                    "BEFORE UPDATE ON products FOR EACH ROW " +
+                    "BEGIN IF NEW.version <=> OLD.version THEN SET NEW.version = OLD.version + 1; END IF; END"))
+    );
+
+    // Leading-wildcard LIKE product searches can never use a B-tree index;
+    // the till serves them from CatalogCache instead, so they are not listed here.
+    private static final List<QueryPath> QUERY_PATHS = List.of(
+            new QueryPath("Inventory.getSalesSince", "SELECT id FROM sales WHERE sale_date >= NOW() - INTERVAL 2 MINUTE ORDER BY sale_date, id"),
+            new QueryPath("Inventory.findSales by payment method", "SELECT id FROM sales WHERE payment_method = 'Card' AND sale_date >= NOW() - INTERVAL 1 DAY"),
+            new QueryPath("Inventory.findSales by product", "SELECT sale_id FROM sale_items WHERE product_id = 1 AND sale_id > 0"),
+            new QueryPath("Inventory.getSaleItems", "SELECT * FROM sale_items WHERE sale_id = 1"),
+            new QueryPath("Inventory.getProductsByCategory", "SELECT * FROM products WHERE category_id IN " +
+                    "(SELECT descendant_id FROM category_closure WHERE ancestor_id = 1) ORDER BY name LIMIT 100"),
+            new QueryPath("Product lookup by ref_number", "SELECT * FROM products WHERE ref_number = 'x'"),
+            new QueryPath("CatalogSynchronizer poll", "SELECT seq FROM catalog_changes WHERE seq > 0 ORDER BY seq LIMIT 1000")
+    );
+
+    /**
+     * Applies any pending migrations and verifies the query paths. Problems are reported on
+     * stderr; the application keeps running either way.
+     */
+    public void migrate() {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (!acquireLock(conn)) {
+                System.err.println("Schema check skipped: another terminal is migrating the schema.");
+                return;
+            }
+            try {
+                execute(conn, "CREATE TABLE IF NOT EXISTS schema_version (" +
+                        "version INT PRIMARY KEY, " +
+                        "description VARCHAR(255) NOT NULL, " +
+                        "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+                int current = getCurrentVersion(conn);
+                for (Migration migration : migrations) {
+                    if (migration.version > current) {
+                        System.out.println("Applying schema migration " + migration.version + ": " + migration.description);
+                        migration.step.apply(conn);
+                        recordVersion(conn, migration);
+                    }
+                }
+            } finally {
+                releaseLock(conn);
+            }
+            verifyQueryPaths(conn);
+        } catch (SQLException e) {
+            System.err.println("Schema check skipped: " + e.getMessage());
+        }
+    }
+
+    // --- Migrations ---
+
+    private void createBaseTables(Connection conn) throws SQLException {
+        execute(conn, "CREATE TABLE IF NOT EXISTS categories (" +
+                "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                "name VARCHAR(100) NOT NULL)");
+        execute(conn, "CREATE TABLE IF NOT EXISTS products (" +
+                "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                "name VARCHAR(255) NOT NULL, " +
+                "price DECIMAL(10,2) NOT NULL, " +
+                "ref_number VARCHAR(64), " +
+                "brand VARCHAR(100), " +
+                "image_path VARCHAR(255), " +
+                "quantity INT NOT NULL DEFAULT 0, " +
+                "category_id INT, " +
+                "FOREIGN KEY (category_id) REFERENCES categories(id))");
+        execute(conn, "CREATE TABLE IF NOT EXISTS sales (" +
+                "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                "sale_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                "total_price DECIMAL(10,2) NOT NULL, " +
+                "payment_method VARCHAR(20) NOT NULL, " +
+                "cash_tendered DECIMAL(10,2) NULL, " +
+                "change_given DECIMAL(10,2) NULL, " +
+                "card_type VARCHAR(20) NULL)");
+        // No foreign key on product_id: sale history is kept when a product is deleted
+        execute(conn, "CREATE TABLE IF NOT EXISTS sale_items (" +
+                "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                "sale_id INT NOT NULL, " +
+                "product_id INT NOT NULL, " +
+                "quantity INT NOT NULL, " +
+                "price_at_sale DECIMAL(10,2) NOT NULL, " +
+                "FOREIGN KEY (sale_id) REFERENCES sales(id))");
+    }
+
+    private void createCatalogChangeLog(Connection conn) throws SQLException {
+        execute(conn, "CREATE TABLE IF NOT EXISTS catalog_changes (" +
+                "seq BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "entity VARCHAR(16) NOT NULL, " +
+                "entity_id INT NOT NULL, " +
+                "changed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+        for (String table : new String[]{"products", "categories"}) {
+            String entity = table.equals("products") ? "product" : "category";
+            ensureTrigger(conn, table + "_ai", "AFTER INSERT ON " + table + " FOR EACH ROW " +
+                    "INSERT INTO catalog_changes(entity, entity_id) VALUES ('" + entity + "', NEW.id)");
+            ensureTrigger(conn, table + "_au", "AFTER UPDATE ON " + table + " FOR EACH ROW " +
+                    "INSERT INTO catalog_changes(entity, entity_id) VALUES ('" + entity + "', NEW.id)");
+            ensureTrigger(conn, table + "_ad", "AFTER DELETE ON " + table + " FOR EACH ROW " +
+                    "INSERT INTO catalog_changes(entity, entity_id) VALUES ('" + entity + "', OLD.id)");
+        }
+    }
+
+    private void createCoreIndexes(Connection conn) throws SQLException {
+        ensureIndex(conn, "sales", "idx_sales_sale_date", "sale_date");
+        ensureIndex(conn, "sale_items", "idx_sale_items_sale_id", "sale_id");
+        ensureIndex(conn, "sale_items", "idx_sale_items_product_id", "product_id");
+        ensureIndex(conn, "products", "idx_products_category_name", "category_id", "name");
+        ensureIndex(conn, "products", "idx_products_ref_number", "ref_number");
+    }
+
+    private void createReportFilterIndexes(Connection conn) throws SQLException {
+        ensureIndex(conn, "sales", "idx_sales_payment_date", "payment_method", "sale_date");
+        // Covers the containing-product filter, which only needs the sale IDs
+        ensureIndex(conn, "sale_items", "idx_sale_items_product_sale", "product_id", "sale_id");
+    }
+
+    private void createPromotions(Connection conn) throws SQLException {
+        // type is PERCENT_OFF, BUY_X_GET_Y or BUNDLE; see Promotion for which columns each uses
+        execute(conn, "CREATE TABLE IF NOT EXISTS promotions (" +
+                "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                "name VARCHAR(100) NOT NULL, " +
+                "type VARCHAR(20) NOT NULL, " +
+                "category_id INT NULL, " +
+                "buy_quantity INT NULL, " +
+                "free_quantity INT NULL, " +
+                "percent_off DECIMAL(5,2) NULL, " +
+                "bundle_price DECIMAL(10,2) NULL, " +
+                "valid_from DATETIME NULL, " +
+                "valid_to DATETIME NULL, " +
+                "daily_start TIME NULL, " +
+                "daily_end TIME NULL, " +
+                "active TINYINT(1) NOT NULL DEFAULT 1)");
+        execute(conn, "CREATE TABLE IF NOT EXISTS promotion_products (" +
+                "promotion_id INT NOT NULL, " +
+                "product_id INT NOT NULL, " +
+                "quantity INT NOT NULL DEFAULT 1, " +
+                "PRIMARY KEY (promotion_id, product_id), " +
+                "FOREIGN KEY (promotion_id) REFERENCES promotions(id) ON DELETE CASCADE)");
+        ensureColumn(conn, "sale_items", "discount", "DECIMAL(10,2) NOT NULL DEFAULT 0");
+        ensureColumn(conn, "sale_items", "promotion_id", "INT NULL");
+    }
+
+    private void createStockAdjustments(Connection conn) throws SQLException {
+        // reason is RECEIVING, STOCK_TAKE, PARK or RECALL; counted is only set for stock takes
+        execute(conn, "CREATE TABLE IF NOT EXISTS stock_adjustments (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "product_id INT NOT NULL, " +
+                "delta INT NOT NULL, " +
+                "counted INT NULL, " +
+                "reason VARCHAR(20) NOT NULL, " +
+                "reference VARCHAR(64) NULL, " +
+                "adjusted_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+        ensureIndex(conn, "stock_adjustments", "idx_stock_adjustments_product_date", "product_id", "adjusted_at");
+    }
+
+    /**
+     * Adds categories.parent_id and the category_closure table, which holds one row for every
+     * (ancestor, descendant) pair including each category with itself, so a whole subtree is one
+     * primary-key range. Triggers keep it in step with inserts and moves, and refuse a move that
+     * would put a category under its own subtree; deletes cascade.
+     */
+    private void createCategoryHierarchy(Connection conn) throws SQLException {
+        ensureColumn(conn, "categories", "parent_id", "INT NULL");
+        ensureIndex(conn, "categories", "idx_categories_parent", "parent_id");
+        execute(conn, "CREATE TABLE IF NOT EXISTS category_closure (" +
+                "ancestor_id INT NOT NULL, " +
+                "descendant_id INT NOT NULL, " +
+                "depth INT NOT NULL, " +
+                "PRIMARY KEY (ancestor_id, descendant_id), " +
+                "KEY idx_category_closure_descendant (descendant_id), " +
+                "FOREIGN KEY (ancestor_id) REFERENCES categories(id) ON DELETE CASCADE, " +
+                "FOREIGN KEY (descendant_id) REFERENCES categories(id) ON DELETE CASCADE)");
+        // Existing categories are all top-level
+        execute(conn, "INSERT IGNORE INTO category_closure (ancestor_id, descendant_id, depth) SELECT id, id, 0 FROM categories");
+
+        ensureTrigger(conn, "categories_closure_ai", "AFTER INSERT ON categories FOR EACH ROW " +
+                "INSERT INTO category_closure (ancestor_id, descendant_id, depth) " +
+                "SELECT ancestor_id, NEW.id, depth + 1 FROM category_closure WHERE descendant_id = NEW.parent_id " +
+                "UNION ALL SELECT NEW.id, NEW.id, 0");
+        ensureTrigger(conn, "categories_closure_bu", "BEFORE UPDATE ON categories FOR EACH ROW " +
+                "BEGIN IF NEW.parent_id IS NOT NULL AND NOT (OLD.parent_id <=> NEW.parent_id) AND EXISTS " +
+                "(SELECT 1 FROM category_closure WHERE ancestor_id = OLD.id AND descendant_id = NEW.parent_id) THEN " +
+                "SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'A category cannot be moved under itself'; " +
+                "END IF; END");
+        // A move detaches the subtree from its old ancestors and links it under the new parent
+        ensureTrigger(conn, "categories_closure_au", "AFTER UPDATE ON categories FOR EACH ROW " +
+                "BEGIN IF NOT (OLD.parent_id <=> NEW.parent_id) THEN " +
+                "DELETE link FROM category_closure link " +
+                "JOIN category_closure sub ON sub.descendant_id = link.descendant_id AND sub.ancestor_id = OLD.id " +
+                "LEFT JOIN category_closure inside ON inside.ancestor_id = OLD.id AND inside.descendant_id = link.ancestor_id " +
+                "WHERE inside.ancestor_id IS NULL; " +
+                "INSERT INTO category_closure (ancestor_id, descendant_id, depth) " +
+                "SELECT above.ancestor_id, sub.descendant_id, above.depth + sub.depth + 1 " +
+                "FROM category_closure above JOIN category_closure sub ON sub.ancestor_id = OLD.id " +
+                "WHERE above.descendant_id = NEW.parent_id; " +
+                "END IF; END");
+    }
+
+    // --- Idempotent building blocks ---
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private static boolean exists(Connection conn, String sql, String... params) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setString(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    static void ensureColumn(Connection conn, String table, String column, String definition) throws SQLException {
+        if (!exists(conn, "SELECT 1 FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?", table, column)) {
+            execute(conn, "ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+
+    /**
+     * Creates an index unless one already starts with the same leading column
+     * (for example the index MySQL creates automatically for a foreign key).
+     */
+    static void ensureIndex(Connection conn, String table, String indexName, String... columns) throws SQLException {
+        if (!exists(conn, "SELECT 1 FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND SEQ_IN_INDEX = 1 AND COLUMN_NAME = ? " +
+                "AND (INDEX_NAME = ? OR ? = 1)", table, columns[0], indexName, String.valueOf(columns.length))) {
+            execute(conn, "CREATE INDEX " + indexName + " ON " + table + " (" + String.join(", ", columns) + ")");
+        }
+    }
+
+    static void ensureTrigger(Connection conn, String name, String body) throws SQLException {
+        if (!exists(conn, "SELECT 1 FROM information_schema.TRIGGERS " +
+                "WHERE TRIGGER_SCHEMA = DATABASE() AND TRIGGER_NAME = ?", name)) {
+            execute(conn, "CREATE TRIGGER " + name + " " + body);
+        }
+    }
+
+    // --- Version bookkeeping ---
+
+    private static int getCurrentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void recordVersion(Connection conn, Migration migration) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+            pstmt.setInt(1, migration.version);
+            pstmt.setString(2, migration.description);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static boolean acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            pstmt.setString(1, LOCK_NAME);
+            pstmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private static void releaseLock(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            pstmt.setString(1, LOCK_NAME);
+            pstmt.executeQuery().close();
+        }
+    }
+
+    // --- Verification ---
+
+    /**
+     * EXPLAINs every critical query and prints a prominent warning for any that would read
+     * the whole table because no usable index exists.
+     */
+    private void verifyQueryPaths(Connection conn) {
+        for (QueryPath path : QUERY_PATHS) {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("EXPLAIN " + path.sql)) {
+                while (rs.next()) {
+                    if ("ALL".equals(rs.getString("type")) && rs.getString("key") == null) {
+                        warnFullScan(path, rs.getString("table"));
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Could not verify query path " + path.usedBy + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void warnFullScan(QueryPath path, String table) {
+        String rule = "*".repeat(78);
+        System.err.println(rule);
+        System.err.println("* PERFORMANCE WARNING: " + path.usedBy + " will scan the whole '" + table + "' table.");
+        System.err.println("* No usable index was found for: " + path.sql);
+        System.err.println("* Check the schema migration output above, or add the index by hand.");
+        System.err.println(rule);
+    }
+}
@@ -0,0 +1,89 @@
+package app;
+
+/**
+ * An in-memory list of stock counts being entered for a delivery or a shelf count, before they
+ * are applied to the database in one go with {@link Inventory#applyStockAdjustments}.
+ * <p>
+ * In receiving mode every line is a quantity to add. In stock-take mode every line is a counted
+ * quantity; the system stock is recorded when the product is first counted, and the adjustment
+ * is the difference. Because only that difference is applied, sales made at the tills between
+ * counting a shelf and applying the worksheet are not undone.
+ */
+public class StockWorksheet {
+
+    public enum Mode {
+        RECEIVING("Goods Receiving"),
+        STOCK_TAKE("Stock Take");
+
+        private final String title;
+
+        Mode(String title) { this.title = title; }
+
+        @Override
+        public String toString() { return title; }
+    }
+
+    private final Mode mode;
+    private final IntList order = new IntList();
+    private final IntObjectMap<Product> products = new IntObjectMap<>();
+    private final IntIntMap entered = new IntIntMap();     // Received or counted quantity
+    private final IntIntMap systemStock = new IntIntMap(); // Stock when first entered (stock take)
+
+    public StockWorksheet(Mode mode) {
+        this.mode = mode;
+    }
+
+    public Mode getMode() { return mode; }
+
+    /**
+     * Adds a quantity to a product's line, creating the line if needed. Scanning the same product
+     * again (e.g. on a second shelf) adds to its count.
+     *
+     * @param currentStock The product's stock right now; only used when the line is created.
+     * @return The line number.
+     */
+    public int add(Product product, int quantity, int currentStock) {
+        int id = product.getId();
+        if (!entered.containsKey(id)) {
+            order.add(id);
+            products.put(id, product);
+            systemStock.put(id, currentStock);
+        }
+        entered.addTo(id, quantity);
+        return order.indexOf(id);
+    }
+
+    public void setEntered(int line, int quantity) {
+        entered.put(order.get(line), Math.max(0, quantity));
+    }
+
+    public void removeLine(int line) {
+        int id = order.removeAt(line);
+        products.remove(id);
+        entered.remove(id);
+        systemStock.remove(id);
+    }
+
+    /**
+     * Keeps only the lines for the given products, e.g. the ones that could not be applied.
+     */
+    public void retainOnly(IntList productIds) {
+        for (int line = order.size() - 1; line >= 0; line--) {
+            if (!productIds.contains(order.get(line))) removeLine(line);
+        }
+    }
+
+    public int size() { return order.size(); }
+    public boolean isEmpty() { return order.isEmpty(); }
+
+    public Product getProduct(int line) { return products.get(order.get(line)); }
+    public int getEntered(int line) { return entered.get(order.get(line), 0); }
+    public int getSystemStock(int line) { return systemStock.get(order.get(line), 0); }
+
+    /**
+     * @return The change to apply to the product's stock.
+     */
+    public int getDelta(int line) {
+        return (mode == Mode.RECEIVING) ? getEntered(line) : getEntered(line) - getSystemStock(line);
+    }
+}
@@ -0,0 +1,215 @@
+package app;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Goods receiving and stock take. Products are scanned (or their ref # typed) into a
+ * StockWorksheet with a quantity; nothing is written until Apply, which sends all lines to the
+ * database as batched relative updates with an audit record per line.
+ */
+public class StockWorksheetDialog extends JDialog {
+
+    private final Inventory inventory;
+    private final CatalogCache catalog;
+    private final StockWorksheet worksheet;
+    private final WorksheetTableModel tableModel;
+    private final JTable table;
+    private final JTextField scanField;
+    private final JSpinner quantitySpinner;
+    private final JTextField referenceField;
+    private final JLabel summaryLabel;
+    private final JButton applyButton;
+
+    public StockWorksheetDialog(Window owner, Inventory inventory, CatalogCache catalog, StockWorksheet.Mode mode) {
+        super(owner, mode.toString(), ModalityType.APPLICATION_MODAL);
+        this.inventory = inventory;
+        this.catalog = catalog;
+        this.worksheet = new StockWorksheet(mode);
+
+        setSize(800, 600);
+        setLocationRelativeTo(owner);
+        setLayout(new BorderLayout(10, 10));
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) { handleClose(); }
+        });
+
+        JPanel northPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        scanField = new JTextField(15);
+        scanField.addActionListener(e -> handleScan());
+        quantitySpinner = new JSpinner(new SpinnerNumberModel(1, 1, 100000, 1));
+        JButton addButton = new JButton("Add");
+        addButton.addActionListener(e -> handleScan());
+        referenceField = new JTextField(12);
+        northPanel.add(new JLabel("Scan / Ref #:"));
+        northPanel.add(scanField);
+        northPanel.add(new JLabel(mode == StockWorksheet.Mode.RECEIVING ? "Received:" : "Counted:"));
+        northPanel.add(quantitySpinner);
+        northPanel.add(addButton);
+        northPanel.add(Box.createHorizontalStrut(20));
+        northPanel.add(new JLabel(mode == StockWorksheet.Mode.RECEIVING ? "Delivery note:" : "Count name:"));
+        northPanel.add(referenceField);
+        add(northPanel, BorderLayout.NORTH);
+
+        tableModel = new WorksheetTableModel();
+        table = new JTable(tableModel);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        summaryLabel = new JLabel(" ");
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton removeButton = new JButton("Remove Line");
+        removeButton.addActionListener(e -> handleRemoveLines());
+        applyButton = new JButton("Apply");
+        applyButton.addActionListener(e -> handleApply());
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(e -> handleClose());
+        buttonPanel.add(removeButton);
+        buttonPanel.add(applyButton);
+        buttonPanel.add(closeButton);
+        southPanel.add(summaryLabel, BorderLayout.CENTER);
+        southPanel.add(buttonPanel, BorderLayout.EAST);
+        southPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 10, 10));
+        add(southPanel, BorderLayout.SOUTH);
+
+        updateSummary();
+    }
+
+    private void handleScan() {
+        String code = scanField.getText().trim();
+        if (code.isEmpty()) return;
+        Product product = catalog.findByRefNumber(code);
+        if (product == null) {
+            List<Product> matches = catalog.searchProducts(code, null);
+            if (matches.size() == 1) product = matches.get(0);
+        }
+        if (product == null) {
+            Toolkit.getDefaultToolkit().beep();
+            JOptionPane.showMessageDialog(this, "No single product matches '" + code + "'.", "Not Found", JOptionPane.WARNING_MESSAGE);
+            scanField.selectAll();
+            return;
+        }
+        int quantity = (int) quantitySpinner.getValue();
+        int line = worksheet.add(product, quantity, inventory.getStockCount(product));
+        tableModel.fireTableDataChanged();
+        table.setRowSelectionInterval(line, line);
+        table.scrollRectToVisible(table.getCellRect(line, 0, true));
+        updateSummary();
+
+        scanField.setText("");
+        quantitySpinner.setValue(1);
+        scanField.requestFocusInWindow();
+    }
+
+    private void handleRemoveLines() {
+        if (table.isEditing()) table.getCellEditor().stopCellEditing();
+        int[] rows = table.getSelectedRows();
+        for (int i = rows.length - 1; i >= 0; i--) {
+            worksheet.removeLine(rows[i]);
+        }
+        tableModel.fireTableDataChanged();
+        updateSummary();
+    }
+
+    private void handleApply() {
+        if (table.isEditing()) table.getCellEditor().stopCellEditing();
+        if (worksheet.isEmpty()) return;
+        int choice = JOptionPane.showConfirmDialog(this, "Apply " + summaryLabel.getText() + " to the stock?",
+                "Confirm " + worksheet.getMode(), JOptionPane.YES_NO_OPTION);
+        if (choice != JOptionPane.YES_OPTION) return;
+
+        String reference = referenceField.getText();
+        int lines = worksheet.size();
+        applyButton.setEnabled(false);
+        summaryLabel.setText("Applying...");
+
+        new SwingWorker<IntList, Void>() {
+            @Override
+            protected IntList doInBackground() {
+                return inventory.applyStockAdjustments(worksheet, reference);
+            }
+
+            @Override
+            protected void done() {
+                applyButton.setEnabled(true);
+                try {
+                    IntList notApplied = get();
+                    worksheet.retainOnly(notApplied);
+                    tableModel.fireTableDataChanged();
+                    updateSummary();
+                    if (notApplied.isEmpty()) {
+                        JOptionPane.showMessageDialog(StockWorksheetDialog.this, lines + " lines applied.", "Success", JOptionPane.INFORMATION_MESSAGE);
+                    } else {
+                        JOptionPane.showMessageDialog(StockWorksheetDialog.this,
+                                (lines - notApplied.size()) + " lines applied. The " + notApplied.size() + " lines left in the worksheet could not be " +
+                                        "applied (product deleted, stock would go negative, or the database is unavailable).",
+                                "Partly Applied", JOptionPane.WARNING_MESSAGE);
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                    updateSummary();
+                }
+            }
+        }.execute();
+    }
+
+    private void handleClose() {
+        if (!worksheet.isEmpty()) {
+            int choice = JOptionPane.showConfirmDialog(this, "Discard the " + worksheet.size() + " lines not yet applied?",
+                    "Unapplied Lines", JOptionPane.YES_NO_OPTION);
+            if (choice != JOptionPane.YES_OPTION) return;
+        }
+        dispose();
+    }
+
+    private void updateSummary() {
+        int added = 0, removed = 0;
+        for (int line = 0; line < worksheet.size(); line++) {
+            int delta = worksheet.getDelta(line);
+            if (delta > 0) added += delta; else removed -= delta;
+        }
+        summaryLabel.setText(String.format("%d lines: +%d / -%d units", worksheet.size(), added, removed));
+        applyButton.setEnabled(!worksheet.isEmpty());
+    }
+
+    private class WorksheetTableModel extends AbstractTableModel {
+        private final String[] columns = {"Ref #", "Product",
+                worksheet.getMode() == StockWorksheet.Mode.RECEIVING ? "Current Stock" : "System Stock",
+                worksheet.getMode() == StockWorksheet.Mode.RECEIVING ? "Received" : "Counted",
+                "Change"};
+
+        @Override public int getRowCount() { return worksheet.size(); }
+        @Override public int getColumnCount() { return columns.length; }
+        @Override public String getColumnName(int column) { return columns[column]; }
+        @Override public Class<?> getColumnClass(int column) { return column >= 2 ? Integer.class : String.class; }
+        @Override public boolean isCellEditable(int row, int column) { return column == 3; }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Product p = worksheet.getProduct(row);
+            switch (column) {
+                case 0: return p.getRefNumber();
+                case 1: return p.getName();
+                case 2: return worksheet.getSystemStock(row);
+                case 3: return worksheet.getEntered(row);
+                default: return worksheet.getDelta(row);
+            }
+        }
+
+        @Override
+        public void setValueAt(Object value, int row, int column) {
+            if (column == 3 && value instanceof Integer quantity) {
+                worksheet.setEntered(row, quantity);
+                fireTableRowsUpdated(row, row);
+                updateSummary();
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package app;
+
+import javax.swing.SwingUtilities;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tracks the best-selling products from completed sales, for the quick-key strip in PosFrame.
+ * <p>
+ * Uses the Space-Saving algorithm: a fixed number of counters, where a product not yet tracked
+ * takes over the counter with the smallest count (inheriting it as its possible over-count). Any
+ * product selling more than 1/capacity of the volume is guaranteed to be tracked. Counts decay
+ * exponentially with a configurable half-life, so last month's seasonal items fade out. Decay is
+ * applied "forward": a sale at time t adds 2^((t - landmark) / halfLife) units, which keeps old
+ * counts untouched; all counts are rescaled when the landmark moves.
+ * <p>
+ * The counters are saved to data/top-sellers.bin after each sale and loaded at startup, so the
+ * strip survives restarts without any SQL aggregation.
+ */
+public class TopSellers {
+
+    /**
+     * Notified on the Event Dispatch Thread after a sale has been recorded.
+     */
+    public interface Listener {
+        void topSellersChanged();
+    }
+
+    public static final Path DEFAULT_PATH = Paths.get(System.getProperty("user.dir"), "data", "top-sellers.bin");
+
+    private static final int MAGIC = 0x504F5354; // "POST"
+    private static final int FORMAT_VERSION = 1;
+    private static final int CAPACITY = 200;
+    private static final long HALF_LIFE_MS = Long.getLong("pos.quickKeys.halfLifeDays", 14) * 24 * 3600 * 1000;
+    private static final double MAX_EXPONENT = 64; // Rescale before weights get anywhere near overflow
+
+    private final Path path;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final IntIntMap indexById = new IntIntMap(CAPACITY * 2);
+    private final int[] ids = new int[CAPACITY];
+    private final double[] counts = new double[CAPACITY];
+    private final double[] errors = new double[CAPACITY];
+    private int size = 0;
+    private long landmark = System.currentTimeMillis();
+
+    public TopSellers(Path path) {
+        this.path = path;
+        load();
+    }
+
+    public void addListener(Listener listener) { listeners.add(listener); }
+    public void removeListener(Listener listener) { listeners.remove(listener); }
+
+    /**
+     * Records the lines of a completed sale, weighted by quantity, and saves the counters.
+     */
+    public void recordSale(Cart cart) {
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            double exponent = (double) (now - landmark) / HALF_LIFE_MS;
+            if (exponent > MAX_EXPONENT) {
+                rescale(now);
+                exponent = 0;
+            }
+            double weight = Math.pow(2, exponent);
+            cart.forEach((product, quantity) -> add(product.getId(), weight * quantity));
+            save();
+        }
+        SwingUtilities.invokeLater(() -> listeners.forEach(Listener::topSellersChanged));
+    }
+
+    private void add(int productId, double amount) {
+        int index = indexById.get(productId, -1);
+        if (index >= 0) {
+            counts[index] += amount;
+            return;
+        }
+        if (size < CAPACITY) {
+            index = size++;
+            errors[index] = 0;
+            counts[index] = amount;
+        } else {
+            // Replace the smallest counter; the newcomer may have been counted that many times before
+            index = 0;
+            for (int i = 1; i < size; i++) {
+                if (counts[i] < counts[index]) index = i;
+            }
+            indexById.remove(ids[index]);
+            errors[index] = counts[index];
+            counts[index] += amount;
+        }
+        ids[index] = productId;
+        indexById.put(productId, index);
+    }
+
+    private void rescale(long newLandmark) {
+        double factor = Math.pow(2, -(double) (newLandmark - landmark) / HALF_LIFE_MS);
+        for (int i = 0; i < size; i++) {
+            counts[i] *= factor;
+            errors[i] *= factor;
+        }
+        landmark = newLandmark;
+    }
+
+    /**
+     * Returns the IDs of the best-selling products, best first. Products whose count may be
+     * mostly over-count (from a counter they took over) rank by their guaranteed count.
+     *
+     * @param limit The maximum number of IDs.
+     */
+    public synchronized IntList getTop(int limit) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(counts[b] - errors[b], counts[a] - errors[a]));
+        IntList top = new IntList(Math.min(limit, size));
+        for (int i = 0; i < Math.min(limit, size); i++) {
+            top.add(ids[order[i]]);
+        }
+        return top;
+    }
+
+    // --- Persistence ---
+
+    private void load() {
+        if (!Files.exists(path)) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                System.err.println("Ignoring top sellers file with unknown format: " + path);
+                return;
+            }
+            landmark = in.readLong();
+            int n = Math.min(in.readInt(), CAPACITY);
+            for (int i = 0; i < n; i++) {
+                ids[i] = in.readInt();
+                counts[i] = in.readDouble();
+                errors[i] = in.readDouble();
+                indexById.put(ids[i], i);
+            }
+            size = n;
+        } catch (IOException e) {
+            System.err.println("Could not load top sellers: " + e.getMessage());
+            indexById.clear();
+            size = 0;
+        }
+    }
+
+    private void save() {
+        try {
+            Files.createDirectories(path.getParent());
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(landmark);
+                out.writeInt(size);
+                for (int i = 0; i < size; i++) {
+                    out.writeInt(ids[i]);
+                    out.writeDouble(counts[i]);
+                    out.writeDouble(errors[i]);
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not save top sellers: " + e.getMessage());
+        }
+    }
+}